@@ -0,0 +1,446 @@
+/*
+ *  AssetCache.java
+ *  ARToolKit5
+ *
+ *  This file is part of ARToolKit.
+ *
+ *  ARToolKit is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ARToolKit is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ARToolKit.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  As a special exception, the copyright holders of this library give you
+ *  permission to link this library with independent modules to produce an
+ *  executable, regardless of the license terms of these independent modules, and to
+ *  copy and distribute the resulting executable under terms of your choice,
+ *  provided that you also meet, for each linked independent module, the terms and
+ *  conditions of the license of that module. An independent module is a module
+ *  which is neither derived from nor based on this library. If you modify this
+ *  library, you may extend this exception to your version of the library, but you
+ *  are not obligated to do so. If you do not wish to do so, delete this exception
+ *  statement from your version.
+ *
+ */
+
+package org.artoolkit.ar.base.assets;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.CRC32;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager.NameNotFoundException;
+import android.content.res.AssetFileDescriptor;
+import android.content.res.AssetManager;
+import android.util.Log;
+
+/**
+ * Brings the cached copy of an asset folder up to date in the background.
+ * <p>
+ * A manifest in the cached folder records the size and CRC of every file copied, and the
+ * package version they were copied from. CRCs come from {@link Hasher}, whose cache makes
+ * checking an unchanged file nearly free. A cached file whose size and CRC still match is
+ * kept; after a package update the asset's own CRC must match as well. Only new, changed or
+ * damaged files are copied, several at a time, through {@link FileChannel} transfers. Files
+ * no longer among the assets are deleted.
+ * <p>
+ * {@link #getFile(String)} gives a future per file, so callers can wait for just the files
+ * they need; {@link #getCompletion()} completes once the whole folder is in place.
+ */
+public class AssetCache {
+
+	private static final String TAG = "AssetCache";
+	private static final String MANIFEST_NAME = "cacheManifest.txt";
+	private static final int MANIFEST_VERSION = 1;
+	private static final int MAX_THREADS = 4;
+	private static final long TRANSFER_CHUNK = 1 << 20;
+
+	private final Context context;
+	private final AssetHelper helper;
+	private final AssetManager manager;
+	private final String assetBasePath;
+	private final File cacheDir;
+	private final File cacheFolder;
+	private final ExecutorService executor;
+
+	// Guarded by this.
+	private final Map<String, FutureTask<File>> files = new HashMap<String, FutureTask<File>>();
+	private Set<String> assets;
+	private boolean listed;
+
+	// Written by the listing task before any file task runs.
+	private Map<String, ManifestEntry> previous;
+	private boolean packageUpdated;
+	private int versionCode;
+	private long lastUpdateTime;
+	private Exception failure;
+
+	private final Map<String, ManifestEntry> current = new ConcurrentHashMap<String, ManifestEntry>();
+	private final AtomicInteger remaining = new AtomicInteger();
+	private final AtomicInteger copied = new AtomicInteger();
+	private final AtomicReference<Exception> fileFailure = new AtomicReference<Exception>();
+	private long startTime;
+
+	private final FutureTask<Void> completion = new FutureTask<Void>(new Callable<Void>() {
+		@Override
+		public Void call() throws Exception {
+			if (failure != null) throw failure;
+			writeManifest();
+			Exception fileError = fileFailure.get();
+			if (fileError != null) {
+				// The manifest keeps the files that did sync; stale ones wait for a clean run.
+				Hasher.flushCache();
+				throw fileError;
+			}
+			deleteStale(cacheFolder);
+			Hasher.flushCache();
+			Log.i(TAG, "Cached folder '" + assetBasePath + "': copied " + copied.get() + " of " + current.size()
+					+ " files in " + ((System.nanoTime() - startTime) / 1000000) + " ms");
+			return null;
+		}
+	});
+
+	AssetCache(AssetHelper helper, AssetManager manager, Context ctx, String assetBasePath) {
+		this.context = ctx.getApplicationContext();
+		this.helper = helper;
+		this.manager = manager;
+		this.assetBasePath = assetBasePath;
+		this.cacheDir = ctx.getCacheDir();
+		this.cacheFolder = new File(cacheDir, assetBasePath);
+		Hasher.initCache(ctx);
+		int threads = Math.max(2, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, TAG + "-" + count.incrementAndGet());
+				thread.setPriority(Thread.NORM_PRIORITY - 1);
+				return thread;
+			}
+		});
+	}
+
+	void start() {
+		startTime = System.nanoTime();
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				list();
+			}
+		});
+	}
+
+	/**
+	 * The cached copy of one asset, e.g. "Data/markers.dat". Fails with a
+	 * {@link FileNotFoundException} cause if there is no such asset.
+	 */
+	public Future<File> getFile(String assetPath) {
+		FutureTask<File> task;
+		boolean unknown;
+		synchronized (this) {
+			task = taskFor(assetPath);
+			unknown = listed && (assets == null || !assets.contains(assetPath));
+		}
+		if (unknown) task.run(); // Fails at once.
+		return task;
+	}
+
+	/**
+	 * Completes when every file of the folder is cached and the manifest written. Fails with
+	 * the first error if listing the folder or syncing any file failed.
+	 */
+	public Future<Void> getCompletion() {
+		return completion;
+	}
+
+	private FutureTask<File> taskFor(final String assetPath) {
+		FutureTask<File> task = files.get(assetPath);
+		if (task == null) {
+			task = new FutureTask<File>(new Callable<File>() {
+				@Override
+				public File call() throws Exception {
+					return sync(assetPath);
+				}
+			});
+			files.put(assetPath, task);
+		}
+		return task;
+	}
+
+	private void list() {
+		Set<String> found = null;
+		try {
+			PackageInfo info = context.getPackageManager().getPackageInfo(context.getPackageName(), 0);
+			versionCode = info.versionCode;
+			lastUpdateTime = info.lastUpdateTime;
+			previous = readManifest();
+			found = helper.getAssetFilenames(assetBasePath);
+		} catch (NameNotFoundException nnfe) {
+			failure = nnfe;
+		}
+
+		final Map<String, FutureTask<File>> tasks = new HashMap<String, FutureTask<File>>();
+		synchronized (this) {
+			assets = found;
+			listed = true;
+			if (found != null) {
+				for (String assetPath : found) taskFor(assetPath);
+			}
+			tasks.putAll(files);
+		}
+
+		// Requests for files that aren't assets fail now.
+		for (Map.Entry<String, FutureTask<File>> entry : tasks.entrySet()) {
+			if (found == null || !found.contains(entry.getKey())) entry.getValue().run();
+		}
+		if (found == null || found.isEmpty()) {
+			finish();
+			return;
+		}
+
+		remaining.set(found.size());
+		for (String assetPath : found) {
+			final FutureTask<File> task = tasks.get(assetPath);
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					task.run();
+					try {
+						task.get();
+					} catch (ExecutionException ee) {
+						Throwable cause = ee.getCause();
+						fileFailure.compareAndSet(null, cause instanceof Exception ? (Exception) cause : ee);
+					} catch (InterruptedException ie) {
+						Thread.currentThread().interrupt();
+					}
+					if (remaining.decrementAndGet() == 0) finish();
+				}
+			});
+		}
+	}
+
+	private void finish() {
+		completion.run();
+		executor.shutdown();
+	}
+
+	private File sync(String assetPath) throws IOException, HashComputationException {
+		if (failure != null) throw new IOException("Listing assets failed", failure);
+		synchronized (this) {
+			if (!assets.contains(assetPath)) throw new FileNotFoundException("No asset '" + assetPath + "'");
+		}
+
+		File target = new File(cacheDir, assetPath);
+		ManifestEntry recorded = previous.get(assetPath);
+		if (recorded != null && target.isFile() && target.length() == recorded.size
+				&& Hasher.computeCRC(target.getPath()) == recorded.crc
+				&& (!packageUpdated || assetMatches(assetPath, recorded))) {
+			current.put(assetPath, recorded);
+			return target;
+		}
+
+		Log.i(TAG, "[" + assetPath + "] -> [" + target.getPath() + "]");
+		copy(assetPath, target);
+		copied.incrementAndGet();
+		current.put(assetPath, new ManifestEntry(target.length(), Hasher.computeCRC(target.getPath())));
+		return target;
+	}
+
+	/** Whether the asset in the package has the recorded size and CRC. */
+	private boolean assetMatches(String assetPath, ManifestEntry recorded) throws IOException {
+		AssetFileDescriptor afd = openFd(assetPath);
+		if (afd != null) {
+			long length = afd.getLength();
+			afd.close();
+			if (length != recorded.size) return false;
+		}
+
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[16384];
+		int bytesRead;
+		InputStream in = manager.open(assetPath);
+		try {
+			while ((bytesRead = in.read(buffer)) != -1) crc.update(buffer, 0, bytesRead);
+		} finally {
+			in.close();
+		}
+		return crc.getValue() == recorded.crc;
+	}
+
+	/** @return the descriptor of an uncompressed asset, null for a compressed one */
+	private AssetFileDescriptor openFd(String assetPath) {
+		try {
+			return manager.openFd(assetPath);
+		} catch (IOException ioe) {
+			return null;
+		}
+	}
+
+	/** Copies through a temporary file, so an interrupted copy never looks complete. */
+	private void copy(String assetPath, File target) throws IOException {
+		File dir = target.getParentFile();
+		if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+			throw new IOException("Unable to create " + dir);
+		}
+		File temp = new File(dir, target.getName() + ".tmp");
+
+		FileOutputStream out = new FileOutputStream(temp);
+		try {
+			FileChannel outChannel = out.getChannel();
+			AssetFileDescriptor afd = openFd(assetPath);
+			if (afd != null) {
+				// Stored uncompressed: transfer straight out of the package file.
+				FileInputStream in = afd.createInputStream();
+				try {
+					FileChannel inChannel = in.getChannel();
+					long start = afd.getStartOffset();
+					long length = afd.getLength();
+					long done = 0;
+					while (done < length) {
+						long n = inChannel.transferTo(start + done, length - done, outChannel);
+						if (n <= 0) throw new IOException("Short transfer of " + assetPath);
+						done += n;
+					}
+				} finally {
+					in.close();
+				}
+			} else {
+				ReadableByteChannel inChannel = Channels.newChannel(manager.open(assetPath));
+				try {
+					long position = 0;
+					long n;
+					while ((n = outChannel.transferFrom(inChannel, position, TRANSFER_CHUNK)) > 0) position += n;
+				} finally {
+					inChannel.close();
+				}
+			}
+		} finally {
+			out.close();
+		}
+
+		if (!temp.renameTo(target)) {
+			temp.delete();
+			throw new IOException("Unable to move " + temp + " to " + target);
+		}
+	}
+
+	private Map<String, ManifestEntry> readManifest() {
+		Map<String, ManifestEntry> entries = new HashMap<String, ManifestEntry>();
+		File manifestFile = new File(cacheFolder, MANIFEST_NAME);
+		BufferedReader inBuf = null;
+		try {
+			inBuf = new BufferedReader(new FileReader(manifestFile));
+			String[] header = inBuf.readLine().split(",");
+			if (header.length != 3 || Integer.parseInt(header[0]) != MANIFEST_VERSION) {
+				Log.i(TAG, "Unknown cache manifest for folder '" + assetBasePath + "'. Re-caching.");
+				packageUpdated = true;
+				return entries;
+			}
+			packageUpdated = Integer.parseInt(header[1]) != versionCode || Long.parseLong(header[2]) != lastUpdateTime;
+			String line;
+			while ((line = inBuf.readLine()) != null) {
+				// size,crc,path. The path goes last as it may hold commas.
+				String[] fields = line.split(",", 3);
+				if (fields.length != 3) continue;
+				entries.put(fields[2], new ManifestEntry(Long.parseLong(fields[0]), Long.parseLong(fields[1])));
+			}
+		} catch (FileNotFoundException fnfe) {
+			Log.i(TAG, "Cache manifest not found for folder '" + assetBasePath + "'. Re-caching.");
+			packageUpdated = true;
+		} catch (IOException | RuntimeException e) {
+			Log.e(TAG, "Cache manifest for folder '" + assetBasePath + "' unreadable: " + e);
+			packageUpdated = true;
+		} finally {
+			if (inBuf != null) {
+				try {
+					inBuf.close();
+				} catch (IOException ioe) {
+					ioe.printStackTrace();
+				}
+			}
+		}
+		return entries;
+	}
+
+	private void writeManifest() throws IOException {
+		if (!cacheFolder.isDirectory() && !cacheFolder.mkdirs()) return;
+		File manifestFile = new File(cacheFolder, MANIFEST_NAME);
+		File temp = new File(cacheFolder, MANIFEST_NAME + ".tmp");
+		BufferedWriter outBuf = new BufferedWriter(new FileWriter(temp));
+		try {
+			outBuf.write(MANIFEST_VERSION + "," + versionCode + "," + lastUpdateTime);
+			outBuf.newLine();
+			for (Map.Entry<String, ManifestEntry> entry : current.entrySet()) {
+				outBuf.write(entry.getValue().size + "," + entry.getValue().crc + "," + entry.getKey());
+				outBuf.newLine();
+			}
+		} finally {
+			outBuf.close();
+		}
+		if (!temp.renameTo(manifestFile)) throw new IOException("Unable to move " + temp + " to " + manifestFile);
+	}
+
+	/** Deletes cached files no longer among the assets, and the index of the old full-copy cache. */
+	private void deleteStale(File fileOrDirectory) {
+		File[] children = fileOrDirectory.listFiles();
+		if (children == null) return;
+		for (File child : children) {
+			if (child.isDirectory()) {
+				deleteStale(child);
+				String[] left = child.list();
+				if (left != null && left.length == 0) child.delete();
+				continue;
+			}
+			if (fileOrDirectory.equals(cacheFolder) && child.getName().equals(MANIFEST_NAME)) continue;
+			String assetPath = child.getPath().substring(cacheDir.getPath().length() + 1);
+			if (!current.containsKey(assetPath)) {
+				Log.i(TAG, "Removing stale cached file '" + assetPath + "'");
+				child.delete();
+			}
+		}
+	}
+
+	private static final class ManifestEntry {
+		final long size;
+		final long crc;
+
+		ManifestEntry(long size, long crc) {
+			this.size = size;
+			this.crc = crc;
+		}
+	}
+}
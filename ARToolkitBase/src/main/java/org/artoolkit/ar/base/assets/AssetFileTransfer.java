@@ -43,6 +43,8 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Map;
 
 import android.content.res.AssetManager;
 import android.os.Environment;
@@ -135,10 +137,10 @@ public class AssetFileTransfer {
 			try {					
 				
 				//tempFileHash = Hasher.computeHash(tempFile.getPath());
-				tempFileCRC = Hasher.computeCRC(tempFile.getPath());
-				
 				//targetFileHash = Hasher.computeHash(targetFile.getPath());
-				targetFileCRC = Hasher.computeCRC(targetFile.getPath());
+				Map<String, Long> crcs = Hasher.computeCRCs(Arrays.asList(tempFile.getPath(), targetFile.getPath()));
+				tempFileCRC = crcs.get(tempFile.getPath());
+				targetFileCRC = crcs.get(targetFile.getPath());
 				
 			} catch (HashComputationException hce) {
 				throw new AssetFileTransferException("Error hashing files", hce);
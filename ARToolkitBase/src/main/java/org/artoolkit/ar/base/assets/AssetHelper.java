@@ -37,12 +37,7 @@
 
 package org.artoolkit.ar.base.assets;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 //import java.security.MessageDigest;
 //import java.security.NoSuchAlgorithmException;
@@ -50,9 +45,9 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 import android.content.Context;
-import android.content.pm.PackageManager.NameNotFoundException;
 import android.content.res.AssetManager;
 import android.util.Log;
 
@@ -95,93 +90,27 @@ public class AssetHelper {
 	    fileOrDirectory.delete();
 	}
 	
+	/**
+	 * Starts bringing the cached copy of the folder up to date on background threads.
+	 * Only files that are missing, damaged or changed in the package are copied.
+	 */
+	public AssetCache cacheAssetFolderAsync(Context ctx, String assetBasePath) {
+		AssetCache cache = new AssetCache(this, manager, ctx, assetBasePath);
+		cache.start();
+		return cache;
+	}
+	
+	/**
+	 * Brings the cached copy of the folder up to date, waiting until it is.
+	 */
 	public void cacheAssetFolder(Context ctx, String assetBasePath) {
-		
-		// If the folder has already been cached, we will inspect the cache.
-		// If it's all OK, we'll return nice and quickly. Otherwise, any previous
-		// cached version will be removed and then a new copy of the folder written
-		// to the cache.
-		boolean reCache = false;
-		
-		// First, look for the folder's cache index which would have been previously
-		// written. We name it cacheIndex-X.txt where X is the "VersionCode" field
-		// from the manifest.
-		int versionCode;
-		try {
-			versionCode = ctx.getPackageManager().getPackageInfo(ctx.getPackageName(), 0).versionCode;
-		} catch (NameNotFoundException nnfe) {
-			nnfe.printStackTrace();
-			return;
-		}
-		File cacheFolder = new File(ctx.getCacheDir().getAbsolutePath() + "/" + assetBasePath);
-		File cacheIndexFile = new File(cacheFolder, "cacheIndex-" + versionCode + ".txt");
-		
-		BufferedReader inBuf = null;
 		try {
-			inBuf = new BufferedReader(new FileReader(cacheIndexFile));
-			if (inBuf != null) {
-				// Cache index exists and is readable. Read it and make sure all files it lists
-				// are still in cache.
-				String line;
-				while ((line = inBuf.readLine()) != null) {
-					File cachedFile = new File(line);
-					if (!cachedFile.exists()) {
-						Log.i(TAG, "Cache for folder '" + assetBasePath + "' incomplete. Re-caching.");	
-						reCache = true;
-						break;
-					}
-				}
-			}
-		} catch (FileNotFoundException fnfe) {
-			// If cache index does not exist, recreate whole cache.
-			Log.i(TAG, "Cache index not found for folder '" + assetBasePath + "'. Re-caching.");	
-			reCache = true;
-		} catch (IOException ioe) {
-			ioe.printStackTrace();
-			return;
-		} finally {
-			if (inBuf != null) {
-				try {
-					inBuf.close();
-					inBuf = null;
-				} catch (IOException ioe) {
-					ioe.printStackTrace();
-				}
-			}
-		}
-		
-		// If needed, write a fresh copy of the folder to the cache.
-		if (reCache) {
-			deleteRecursive(cacheFolder); // Delete remnant, if any, of cached folder.
-			List<AssetFileTransfer> transfers = copyAssetFolder(assetBasePath, ctx.getCacheDir().getAbsolutePath()); // Recreate it.
-			
-			// Now write a new cache index inside the folder.
-			BufferedWriter outBuf = null;
-			try {
-				outBuf = new BufferedWriter(new FileWriter(cacheIndexFile));
-				for (AssetFileTransfer aft : transfers) {
-					outBuf.write(aft.targetFile.getAbsolutePath());
-					outBuf.newLine();
-				}
-			} catch (FileNotFoundException fnfe) {
-				fnfe.printStackTrace();
-			} catch (IOException ioe) {
-				ioe.printStackTrace();
-			} finally {
-				if (outBuf != null) {
-					try {
-						outBuf.flush();
-						outBuf.close();
-						outBuf = null;
-					} catch (IOException ioe) {
-						ioe.printStackTrace();
-					}
-				}
-			}
-		} else {
-			Log.i(TAG, "Using cached folder '" + assetBasePath + "'.");	
+			cacheAssetFolderAsync(ctx, assetBasePath).getCompletion().get();
+		} catch (ExecutionException ee) {
+			Log.e(TAG, "Caching folder '" + assetBasePath + "' failed: " + ee.getCause());
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
 		}
-		
 	}
 	
 	public Set<String> getAssetFilenames(String path) {		
@@ -0,0 +1,223 @@
+/*
+ *  HashCache.java
+ *  ARToolKit5
+ *
+ *  This file is part of ARToolKit.
+ *
+ *  ARToolKit is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU Lesser General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  ARToolKit is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with ARToolKit.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ *  As a special exception, the copyright holders of this library give you
+ *  permission to link this library with independent modules to produce an
+ *  executable, regardless of the license terms of these independent modules, and to
+ *  copy and distribute the resulting executable under terms of your choice,
+ *  provided that you also meet, for each linked independent module, the terms and
+ *  conditions of the license of that module. An independent module is a module
+ *  which is neither derived from nor based on this library. If you modify this
+ *  library, you may extend this exception to your version of the library, but you
+ *  are not obligated to do so. If you do not wish to do so, delete this exception
+ *  statement from your version.
+ *
+ */
+
+package org.artoolkit.ar.base.assets;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import android.util.Log;
+
+/**
+ * Hashes already computed by {@link Hasher}, keyed by path and valid for as long as the file
+ * keeps its size and modification time. Files modified within the last
+ * {@link #RACY_MILLIS} aren't cached, as a further write might not change their time stamp.
+ * <p>
+ * Once given a file, the cache is loaded from it and written back a few seconds after it
+ * changes. Format, big endian: magic, version, count, then per entry the path, size,
+ * modification time, CRC (-1 if not known) and SHA-1 ("" if not known).
+ */
+class HashCache {
+
+	private static final String TAG = "HashCache";
+	private static final int MAGIC = 0x48534843;
+	private static final int VERSION = 1;
+	private static final long RACY_MILLIS = 2000;
+	private static final long WRITE_DELAY_SECONDS = 3;
+	static final long NO_CRC = -1;
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+	private final AtomicBoolean writeScheduled = new AtomicBoolean();
+	private File file;
+	private ScheduledExecutorService writer;
+
+	/** Loads the cache from the file and keeps it there from now on. Later calls are ignored. */
+	synchronized void persistTo(File file) {
+		if (this.file != null) return;
+		this.file = file;
+		writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, TAG);
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		load();
+		if (!entries.isEmpty()) scheduleWrite();
+	}
+
+	/** @return the cached entry of the file, if it still describes it */
+	Entry get(File file) {
+		Entry entry = entries.get(file.getAbsolutePath());
+		if (entry == null || entry.size != file.length() || entry.modified != file.lastModified()) return null;
+		return entry;
+	}
+
+	void putCRC(File file, long size, long modified, long crc) {
+		Entry old = entries.get(file.getAbsolutePath());
+		String sha1 = (old != null && old.size == size && old.modified == modified) ? old.sha1 : null;
+		put(file, new Entry(size, modified, crc, sha1));
+	}
+
+	void putSHA1(File file, long size, long modified, String sha1) {
+		Entry old = entries.get(file.getAbsolutePath());
+		long crc = (old != null && old.size == size && old.modified == modified) ? old.crc : NO_CRC;
+		put(file, new Entry(size, modified, crc, sha1));
+	}
+
+	private void put(File file, Entry entry) {
+		if (System.currentTimeMillis() - entry.modified < RACY_MILLIS) return;
+		entries.put(file.getAbsolutePath(), entry);
+		scheduleWrite();
+	}
+
+	/** Writes pending changes now, on the calling thread. */
+	synchronized void flush() {
+		if (file == null || !writeScheduled.getAndSet(false)) return;
+		write();
+	}
+
+	private synchronized void scheduleWrite() {
+		if (writer == null || !writeScheduled.compareAndSet(false, true)) return;
+		writer.schedule(new Runnable() {
+			@Override
+			public void run() {
+				flush();
+			}
+		}, WRITE_DELAY_SECONDS, TimeUnit.SECONDS);
+	}
+
+	private void load() {
+		DataInputStream in = null;
+		int count = 0;
+		try {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				Log.i(TAG, "Ignoring hash cache " + file + " of another format");
+				return;
+			}
+			count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				String path = in.readUTF();
+				long size = in.readLong();
+				long modified = in.readLong();
+				long crc = in.readLong();
+				String sha1 = in.readUTF();
+				File cached = new File(path);
+				// Drop entries of files that have gone or changed.
+				if (cached.length() == size && cached.lastModified() == modified) {
+					entries.put(path, new Entry(size, modified, crc, sha1.isEmpty() ? null : sha1));
+				}
+			}
+			Log.i(TAG, "Loaded " + entries.size() + " of " + count + " cached hashes");
+		} catch (FileNotFoundException fnfe) {
+			// First run.
+		} catch (EOFException eofe) {
+			Log.e(TAG, "Hash cache " + file + " truncated, keeping " + entries.size() + " of " + count + " hashes");
+		} catch (IOException ioe) {
+			Log.e(TAG, "Reading hash cache " + file + " failed: " + ioe.getMessage());
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException ioe) {
+					ioe.printStackTrace();
+				}
+			}
+		}
+	}
+
+	private void write() {
+		File temp = new File(file.getPath() + ".tmp");
+		DataOutputStream out = null;
+		try {
+			out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			// Snapshot first, so the count matches what is written.
+			Map<String, Entry> snapshot = new HashMap<String, Entry>(entries);
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(snapshot.size());
+			for (Map.Entry<String, Entry> e : snapshot.entrySet()) {
+				Entry entry = e.getValue();
+				out.writeUTF(e.getKey());
+				out.writeLong(entry.size);
+				out.writeLong(entry.modified);
+				out.writeLong(entry.crc);
+				out.writeUTF(entry.sha1 == null ? "" : entry.sha1);
+			}
+			out.close();
+			out = null;
+			if (!temp.renameTo(file)) throw new IOException("Unable to move " + temp + " to " + file);
+		} catch (IOException ioe) {
+			Log.e(TAG, "Writing hash cache " + file + " failed: " + ioe.getMessage());
+		} finally {
+			if (out != null) {
+				try {
+					out.close();
+				} catch (IOException ioe) {
+					ioe.printStackTrace();
+				}
+			}
+		}
+	}
+
+	static final class Entry {
+		final long size;
+		final long modified;
+		final long crc;
+		final String sha1;
+
+		Entry(long size, long modified, long crc, String sha1) {
+			this.size = size;
+			this.modified = modified;
+			this.crc = crc;
+			this.sha1 = sha1;
+		}
+	}
+}
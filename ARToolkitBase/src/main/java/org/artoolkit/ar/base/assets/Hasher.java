@@ -37,22 +37,49 @@
 
 package org.artoolkit.ar.base.assets;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.zip.CRC32;
 
-//import android.util.Log;
+import android.content.Context;
+import android.os.Build;
 
+/**
+ * File hashing. Files are read through memory mapped {@link FileChannel}s, and results are
+ * kept in a {@link HashCache} for as long as a file keeps its size and modification time, so
+ * unchanged files are only hashed once. Call {@link #initCache(Context)} to keep the cache
+ * across runs. The *Async and computeCRCs methods hash several files at once.
+ */
 public class Hasher {
 
 	//private final static String TAG = "Hasher";
-	
+
 	private final static String HEX = "0123456789ABCDEF";
-	
+	private final static String CACHE_FILE_NAME = "hashCache.bin";
+	private final static long MAP_WINDOW = 16 * 1024 * 1024;
+	private final static int MAX_THREADS = 4;
+
+	private final static HashCache cache = new HashCache();
+	private static ExecutorService executor;
+
 	public static String toHex(byte[] buf) {
         
 		if (buf == null) return "";
@@ -66,90 +93,164 @@ public class Hasher {
         return result.toString();
 }
 
+	/** Keeps computed hashes in the app's cache directory across runs. */
+	public static void initCache(Context ctx) {
+		cache.persistTo(new File(ctx.getCacheDir(), CACHE_FILE_NAME));
+	}
+
+	/** Writes cached hashes not yet stored. They are otherwise written a few seconds after they change. */
+	public static void flushCache() {
+		cache.flush();
+	}
+
 	public static long computeCRC(String filename) throws HashComputationException {
-		
-		InputStream in = null;
-		byte[] buffer = new byte[16384];   		 
-		int bytesRead = -1;
-		CRC32 crc = new CRC32();
-		
-		try {
-			in = new FileInputStream(filename);
-		} catch (FileNotFoundException fnfe) {					
-			throw new HashComputationException("File not found: " + filename, fnfe);
-		}
-		
-		//long crcStartTime = System.nanoTime();
-		
-		try {            
-    		while ((bytesRead = in.read(buffer)) != -1) crc.update(buffer, 0, bytesRead);
-    		in.close();
-    		in = null;
-		} catch (IOException ioe) {
-			throw new HashComputationException("IOException while reading from file", ioe);
-		}
-		
+
+		File file = new File(filename);
+		HashCache.Entry cached = cache.get(file);
+		if (cached != null && cached.crc != HashCache.NO_CRC) return cached.crc;
+
+		long size = file.length();
+		long modified = file.lastModified();
+		final CRC32 crc = new CRC32();
+		final byte[] chunk = Build.VERSION.SDK_INT >= 26 ? null : new byte[16384];
+
+		read(file, new BufferConsumer() {
+			@Override
+			public void consume(MappedByteBuffer buffer) {
+				if (chunk == null) {
+					crc.update(buffer);
+					return;
+				}
+				// CRC32 only takes a ByteBuffer from API 26 on.
+				while (buffer.hasRemaining()) {
+					int n = Math.min(chunk.length, buffer.remaining());
+					buffer.get(chunk, 0, n);
+					crc.update(chunk, 0, n);
+				}
+			}
+		});
+
 		long value = crc.getValue();
-		      
-        //long elapsedTime = System.nanoTime() - crcStartTime;
-        //Log.i(TAG, "CRC time: " + (elapsedTime / 1000000.0f) + " ms");
- 
-        //Log.i(TAG, "CRC result of " + filename + ": " + value);
-        
+		cache.putCRC(file, size, modified, value);
         return value;
-		
+
 	}
-	
 
-	
+
+
 	public static String computeHash(String filename) throws HashComputationException, IOException {
-		
-		InputStream in = null;
-		MessageDigest digest = null;
+
+		File file = new File(filename);
+		HashCache.Entry cached = cache.get(file);
+		if (cached != null && cached.sha1 != null) return cached.sha1;
+
 		String algorithm = "SHA-1";
-		byte[] buffer = new byte[16384];   		 
-		int bytesRead = -1;
-		
-		
+		final MessageDigest digest;
 		try {
-			in = new FileInputStream(filename);
-		} catch (FileNotFoundException fnfe) {					
-			throw new HashComputationException("File not found: " + filename, fnfe);
-		}
-		
-				
-		try {		
 			digest = MessageDigest.getInstance(algorithm);
 		} catch (NoSuchAlgorithmException nsae) {
+			throw new HashComputationException("No such algorithm: " + algorithm, nsae);
+		}
+
+		long size = file.length();
+		long modified = file.lastModified();
+		read(file, new BufferConsumer() {
+			@Override
+			public void consume(MappedByteBuffer buffer) {
+				digest.update(buffer);
+			}
+		});
+
+        String hash = toHex(digest.digest());
+		cache.putSHA1(file, size, modified, hash);
+        return hash;
+
+	}
+
+	public static Future<Long> computeCRCAsync(final String filename) {
+		return getExecutor().submit(new Callable<Long>() {
+			@Override
+			public Long call() throws HashComputationException {
+				return computeCRC(filename);
+			}
+		});
+	}
+
+	public static Future<String> computeHashAsync(final String filename) {
+		return getExecutor().submit(new Callable<String>() {
+			@Override
+			public String call() throws HashComputationException, IOException {
+				return computeHash(filename);
+			}
+		});
+	}
+
+	/** The CRCs of the files, hashed in parallel, in the order given. */
+	public static Map<String, Long> computeCRCs(Collection<String> filenames) throws HashComputationException {
+		List<Future<Long>> futures = new ArrayList<Future<Long>>(filenames.size());
+		for (String filename : filenames) futures.add(computeCRCAsync(filename));
+
+		Map<String, Long> crcs = new LinkedHashMap<String, Long>();
+		int i = 0;
+		for (String filename : filenames) {
 			try {
-				in.close();
-			} catch (IOException e) {
-				throw e;
+				crcs.put(filename, futures.get(i++).get());
+			} catch (ExecutionException ee) {
+				if (ee.getCause() instanceof HashComputationException) throw (HashComputationException) ee.getCause();
+				throw new HashComputationException("Hashing " + filename + " failed", ee.getCause());
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				throw new HashComputationException("Interrupted while hashing " + filename, ie);
 			}
-    		in = null;
-			throw new HashComputationException("No such algorithm: " + algorithm, nsae);
 		}
-		
-		//long hashStartTime = System.nanoTime();
-		
-		try {            
-    		while ((bytesRead = in.read(buffer)) != -1) digest.update(buffer, 0, bytesRead);
-    		in.close();
-    		in = null;
+		return crcs;
+	}
+
+	private static synchronized ExecutorService getExecutor() {
+		if (executor == null) {
+			int threads = Math.max(1, Math.min(MAX_THREADS, Runtime.getRuntime().availableProcessors()));
+			executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "Hasher-" + count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return executor;
+	}
+
+	private interface BufferConsumer {
+		void consume(MappedByteBuffer buffer);
+	}
+
+	/** Maps the file a window at a time, so large files don't need one huge mapping. */
+	private static void read(File file, BufferConsumer consumer) throws HashComputationException {
+
+		FileInputStream in;
+		try {
+			in = new FileInputStream(file);
+		} catch (FileNotFoundException fnfe) {
+			throw new HashComputationException("File not found: " + file.getPath(), fnfe);
+		}
+
+		try {
+			try {
+				FileChannel channel = in.getChannel();
+				long size = channel.size();
+				for (long position = 0; position < size; position += MAP_WINDOW) {
+					consumer.consume(channel.map(FileChannel.MapMode.READ_ONLY, position,
+							Math.min(MAP_WINDOW, size - position)));
+				}
+			} finally {
+				in.close();
+			}
 		} catch (IOException ioe) {
 			throw new HashComputationException("IOException while reading from file", ioe);
 		}
-		
-		byte[] digestResult = digest.digest();
-		      
-        //long elapsedTime = System.nanoTime() - hashStartTime;
-        //Log.i(TAG, "Hash time: " + (elapsedTime / 1000000.0f) + " ms");
-        
-        String hash = toHex(digestResult);     
-        //Log.i(TAG, "Hash result of " + filename + ": " + hash);
-        
-        return hash;
-
 	}
-	
+
 }
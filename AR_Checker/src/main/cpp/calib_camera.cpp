@@ -106,6 +106,7 @@ JavaVM *jvm = NULL;
 // Data upload.
 //
 static FILE_UPLOAD_HANDLE_t *fileUploadHandle = NULL;
+static int gSaveCount = 0; // Keeps queue file names of saves within the same second apart.
 
 
 // ============================================================================
@@ -165,14 +166,18 @@ void saveParam(const ARParam *param, ARdouble err_avg, ARdouble err_min, ARdoubl
         return;
     }
 
+    // Every save gets its own files, so it can't overwrite one still waiting in the queue.
+    char queueId[32];
+    snprintf(queueId, sizeof(queueId), "%ld-%d", (long) ourClock, gSaveCount++);
+
     // Save the parameter file.
-    snprintf(paramPathname, SAVEPARAM_PATHNAME_LEN, "%s/camera_para.dat", QUEUE_DIR);
+    snprintf(paramPathname, SAVEPARAM_PATHNAME_LEN, "%s/camera_para-%s.dat", QUEUE_DIR, queueId);
     if (arParamSave(paramPathname, 1, param) < 0) {
 
         LOGE("Error writing camera_para.dat file.\n");
 
     } else {
-        LOGD("%s/camera_para.dat created in %s",QUEUE_DIR,paramPathname);
+        LOGD("Parameter file created in %s",paramPathname);
         char device_id[PROP_VALUE_MAX * 3 +
                        2]; // From <sys/system_properties.h>. 3 properties plus separators.
         char camera_index[12]; // 10 digits in INT32_MAX, plus sign, plus null.
@@ -187,7 +192,7 @@ void saveParam(const ARParam *param, ARdouble err_avg, ARdouble err_min, ARdoubl
         bool goodWrite = true;
 
         // Open the file.
-        snprintf(indexPathname, SAVEPARAM_PATHNAME_LEN, "%s/index", QUEUE_DIR);
+        snprintf(indexPathname, SAVEPARAM_PATHNAME_LEN, "%s/index-%s", QUEUE_DIR, queueId);
         FILE *fp;
         if (!(fp = fopen(indexPathname, "wb"))) {
             LOGE("Error opening upload index file '%s'.\n", indexPathname);
@@ -313,14 +318,15 @@ void saveParam(const ARParam *param, ARdouble err_avg, ARdouble err_min, ARdoubl
 
         if (goodWrite) {
             // Rename the file with QUEUE_INDEX_FILE_EXTENSION file extension so it's picked up in uploader.
-            snprintf(indexUploadPathname, SAVEPARAM_PATHNAME_LEN, "%s.upload", indexPathname);
+            snprintf(indexUploadPathname, SAVEPARAM_PATHNAME_LEN, "%s.%s", indexPathname,
+                     QUEUE_INDEX_FILE_EXTENSION);
             if (rename(indexPathname, indexUploadPathname) < 0) {
                 LOGE("Error renaming temporary file '%s'.\n", indexPathname);
                 goodWrite = false;
             } else {
-                // Kick off an upload handling cycle.
-                LOGD("Calling fileUploaderTickle");
-                fileUploaderTickle(fileUploadHandle);
+                // Queue it and kick off an upload handling cycle.
+                LOGD("Calling fileUploaderEnqueue");
+                fileUploaderEnqueue(fileUploadHandle, indexUploadPathname);
             }
         }
 
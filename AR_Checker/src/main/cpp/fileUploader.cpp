@@ -36,6 +36,9 @@
 #include <sys/stat.h> // struct stat, stat()
 #include <pthread.h>
 #include <errno.h>
+#include <stdint.h>
+#include <stdlib.h> // arc4random_uniform()
+#include <time.h> // clock_gettime()
 
 #include <ARX/ARUtil/thread_sub.h>
 
@@ -50,6 +53,15 @@ static jclass classCameraCalibrationActivity;
 
 
 
+// One queued upload: an index file and the file it names.
+typedef struct _UPLOAD_QUEUE_ENTRY {
+    char *indexPathname;
+    char *filePathname; // Value of the index file's 'file' field, or NULL if it has none.
+    uint64_t contentHash; // FNV-1a hash of the file's contents, 0 if it has none.
+    bool inFlight; // Taken by a transfer that hasn't finished yet.
+    struct _UPLOAD_QUEUE_ENTRY *next;
+} UPLOAD_QUEUE_ENTRY_t;
+
 struct _FILE_UPLOAD_HANDLE {
     char *queueDirPath;
     char *formExtension;
@@ -60,8 +72,27 @@ struct _FILE_UPLOAD_HANDLE {
     struct timeval uploadStatusHideAtTime; // The time at which upload status should be hidden.
     struct timeval uploadStatusHideAfterSecs; // The number of seconds the user asked  for the status to be shown.
     pthread_mutex_t uploadStatusLock;
+    UPLOAD_QUEUE_ENTRY_t *queueHead; // Oldest entry, uploaded first.
+    UPLOAD_QUEUE_ENTRY_t *queueTail;
+    int queueLength;
+    pthread_mutex_t queueLock;
+    bool batchRejected; // Server refused a multi-file POST, so upload one file per request.
+    int failedPasses; // Consecutive upload passes that ended in a network or server error.
+    bool quit; // Set by fileUploaderFinal() to cut a retry wait short.
+    pthread_cond_t retryCond;
 };
 
+// One of the upload thread's transfers. The easy handles live as long as the thread, so
+// connections to the server are kept alive between uploads.
+typedef struct {
+    CURL *curl;
+    struct curl_httppost *post;
+    UPLOAD_QUEUE_ENTRY_t *entries[FILE_UPLOADER_BATCH_MAX];
+    int count;
+    bool busy;
+    char errorBuf[CURL_ERROR_SIZE];
+} UPLOAD_TRANSFER_t;
+
 // ---------------------------------------------------------------------------
 
 
@@ -86,36 +117,269 @@ static char *get_buff(char *buf, int n, FILE *fp, int skipblanks) {
     return (ret);
 }
 
-static bool getNextFileInQueueWithExtension(const char *queueDir, const char *ext, char *buf,
-                                            int len) {
-    DIR *dirp;
-    struct dirent *direntp;
+// Finds the value of the 'file' field in an index file.
+static bool getFilePathnameFromIndex(const char *indexPathname, char *buf, int len) {
+    FILE *fp;
+    char line[1024];
+    bool found = false;
 
-    ARLOGd("Entering getNextFileInQueueWithExtension with queueDir: %s, ext: %s, buf: %s, len: %d",queueDir,ext,buf,len);
+    if (!(fp = fopen(indexPathname, "rb"))) {
+        ARLOGe("Error opening upload queue file '%s'.\n", indexPathname);
+        return (false);
+    }
+    *buf = '\0';
+    while (get_buff(line, sizeof(line), fp, true)) {
+        char *commaPos;
+        if (!(commaPos = strchr(line, ','))) continue;
+        *commaPos = '\0';
+        if (strcmp(line, "file") == 0) {
+            snprintf(buf, len, "%s", commaPos + 1);
+            found = true;
+            break;
+        }
+    }
+    fclose(fp);
+    return (found);
+}
 
-    if (!buf || !ext) return (false);
+// 64-bit FNV-1a hash of a file's contents. Returns 0 if the file can't be read.
+static uint64_t hashFileContents(const char *pathname) {
+    FILE *fp;
+    unsigned char chunk[4096];
+    size_t n;
+    uint64_t hash = 14695981039346656037ULL;
+
+    if (!(fp = fopen(pathname, "rb"))) return (0);
+    while ((n = fread(chunk, 1, sizeof(chunk), fp)) > 0) {
+        for (size_t i = 0; i < n; i++) {
+            hash ^= chunk[i];
+            hash *= 1099511628211ULL;
+        }
+    }
+    if (ferror(fp)) {
+        fclose(fp);
+        return (0);
+    }
+    fclose(fp);
+    return (hash ? hash : 1);
+}
 
-    if (!(dirp = opendir(queueDir))) {
-        //This error is expected when the app runs for the first time as the directory has not been created yet.
-        ARLOGe("Error opening upload queue dir '%s' error: %d.\n", queueDir, errno);
+static void removeQueuedFiles(const UPLOAD_QUEUE_ENTRY_t *entry) {
+    if (remove(entry->indexPathname) < 0) {
+        ARLOGe("Error removing index file '%s'.\n", entry->indexPathname);
+        ARLOGperror(NULL);
+    }
+    if (entry->filePathname && remove(entry->filePathname) < 0) {
+        ARLOGe("Error removing file '%s'.\n", entry->filePathname);
+        ARLOGperror(NULL);
+    }
+}
+
+static void freeQueueEntry(UPLOAD_QUEUE_ENTRY_t *entry) {
+    free(entry->indexPathname);
+    free(entry->filePathname);
+    free(entry);
+}
+
+// Adds an index file to the tail of the queue. An index whose file has the same contents
+// as one already queued is a repeat of that calibration, so it is deleted instead.
+// Returns true if the queue gained an entry.
+static bool queueAdd(FILE_UPLOAD_HANDLE_t *handle, const char *indexPathname) {
+    UPLOAD_QUEUE_ENTRY_t *entry;
+    UPLOAD_QUEUE_ENTRY_t *e;
+    char filePathname[MAXPATHLEN];
+
+    if (!(entry = (UPLOAD_QUEUE_ENTRY_t *) calloc(1, sizeof(UPLOAD_QUEUE_ENTRY_t)))) {
+        ARLOGe("Out of memory!\n");
         return (false);
     }
+    entry->indexPathname = strdup(indexPathname);
+    if (getFilePathnameFromIndex(indexPathname, filePathname, MAXPATHLEN)) {
+        entry->filePathname = strdup(filePathname);
+        if (!(entry->contentHash = hashFileContents(filePathname))) {
+            ARLOGe("Dropping upload '%s', its file '%s' can't be read.\n", indexPathname, filePathname);
+            removeQueuedFiles(entry);
+            freeQueueEntry(entry);
+            return (false);
+        }
+    }
+
+    pthread_mutex_lock(&(handle->queueLock));
+    if (entry->contentHash) {
+        for (e = handle->queueHead; e; e = e->next) {
+            if (e->contentHash == entry->contentHash) break;
+        }
+        if (e) {
+            pthread_mutex_unlock(&(handle->queueLock));
+            ARLOGi("'%s' has the same contents as queued '%s', not uploading it again.\n",
+                   entry->filePathname, e->filePathname);
+            removeQueuedFiles(entry);
+            freeQueueEntry(entry);
+            return (false);
+        }
+    }
+    if (handle->queueTail) handle->queueTail->next = entry;
+    else handle->queueHead = entry;
+    handle->queueTail = entry;
+    int length = ++handle->queueLength;
+    pthread_mutex_unlock(&(handle->queueLock));
+
+    ARLOGd("Queued '%s', %d upload(s) pending", indexPathname, length);
+    return (true);
+}
+
+// Takes up to "max" entries, oldest first, that no other transfer holds. Entries are only
+// unlinked by the upload thread, so the pointers stay valid until queueRemove() or queueRelease().
+static int queueTake(FILE_UPLOAD_HANDLE_t *handle, UPLOAD_QUEUE_ENTRY_t **entries, int max) {
+    int count = 0;
+
+    pthread_mutex_lock(&(handle->queueLock));
+    for (UPLOAD_QUEUE_ENTRY_t *e = handle->queueHead; e && count < max; e = e->next) {
+        if (e->inFlight) continue;
+        e->inFlight = true;
+        entries[count++] = e;
+    }
+    pthread_mutex_unlock(&(handle->queueLock));
+    return (count);
+}
+
+// Hands taken entries back to the queue for a later attempt.
+static void queueRelease(FILE_UPLOAD_HANDLE_t *handle, UPLOAD_QUEUE_ENTRY_t **entries, int count) {
+    pthread_mutex_lock(&(handle->queueLock));
+    for (int i = 0; i < count; i++) entries[i]->inFlight = false;
+    pthread_mutex_unlock(&(handle->queueLock));
+}
+
+// Unlinks taken entries once uploaded, and deletes their files.
+static void queueRemove(FILE_UPLOAD_HANDLE_t *handle, UPLOAD_QUEUE_ENTRY_t **entries, int count) {
+    for (int i = 0; i < count; i++) {
+        pthread_mutex_lock(&(handle->queueLock));
+        UPLOAD_QUEUE_ENTRY_t *prev = NULL;
+        UPLOAD_QUEUE_ENTRY_t *e = handle->queueHead;
+        while (e && e != entries[i]) {
+            prev = e;
+            e = e->next;
+        }
+        if (e) {
+            if (prev) prev->next = e->next;
+            else handle->queueHead = e->next;
+            if (handle->queueTail == e) handle->queueTail = prev;
+            handle->queueLength--;
+        }
+        pthread_mutex_unlock(&(handle->queueLock));
+        if (!e) continue;
+
+        removeQueuedFiles(e);
+        freeQueueEntry(e);
+    }
+}
+
+static bool queueIsEmpty(FILE_UPLOAD_HANDLE_t *handle) {
+    pthread_mutex_lock(&(handle->queueLock));
+    bool empty = (handle->queueHead == NULL);
+    pthread_mutex_unlock(&(handle->queueLock));
+    return (empty);
+}
+
+// Exponential backoff with jitter: a random delay between half and all of
+// FILE_UPLOADER_BACKOFF_BASE_SECS * 2^(failures - 1), capped at FILE_UPLOADER_BACKOFF_MAX_SECS.
+static uint32_t retryDelayMillis(int failures) {
+    uint32_t ceiling = FILE_UPLOADER_BACKOFF_MAX_SECS * 1000;
+    uint32_t delay = FILE_UPLOADER_BACKOFF_BASE_SECS * 1000;
+    for (int i = 1; i < failures && delay < ceiling; i++) delay *= 2;
+    if (delay > ceiling) delay = ceiling;
+    return (delay / 2 + arc4random_uniform(delay / 2 + 1));
+}
+
+// Sleeps for "millis" unless fileUploaderFinal() is called meanwhile.
+// Returns false if the uploader is quitting.
+static bool waitForRetry(FILE_UPLOAD_HANDLE_t *handle, uint32_t millis) {
+    struct timespec until;
+    bool quit;
+
+    clock_gettime(CLOCK_REALTIME, &until);
+    until.tv_sec += millis / 1000;
+    until.tv_nsec += (long) (millis % 1000) * 1000000L;
+    if (until.tv_nsec >= 1000000000L) {
+        until.tv_sec++;
+        until.tv_nsec -= 1000000000L;
+    }
+
+    pthread_mutex_lock(&(handle->queueLock));
+    while (!handle->quit) {
+        if (pthread_cond_timedwait(&(handle->retryCond), &(handle->queueLock), &until) == ETIMEDOUT) break;
+    }
+    quit = handle->quit;
+    pthread_mutex_unlock(&(handle->queueLock));
+    return (!quit);
+}
+
+// Scans the queue directory once, queueing the index files left from earlier runs.
+static void queueRebuild(FILE_UPLOAD_HANDLE_t *handle) {
+    DIR *dirp;
+    struct dirent *direntp;
+    char pathname[MAXPATHLEN];
+
+    if (!handle->queueDirPath) return;
+    if (!(dirp = opendir(handle->queueDirPath))) {
+        //This error is expected when the app runs for the first time as the directory has not been created yet.
+        ARLOGd("Upload queue dir '%s' not opened, error: %d.\n", handle->queueDirPath, errno);
+        return;
+    }
 
-    *buf = '\0';
     while ((direntp = readdir(dirp))) {
         char *ext0 = arUtilGetFileExtensionFromPath(direntp->d_name, true);
         if (!ext0) continue;
-        if (strcmp(ext0, ext) == 0) {
-            free(ext0);
-            snprintf(buf, len, "%s/%s", queueDir, direntp->d_name);
-            break;
+        if (strcmp(ext0, handle->formExtension) == 0) {
+            snprintf(pathname, MAXPATHLEN, "%s/%s", handle->queueDirPath, direntp->d_name);
+            queueAdd(handle, pathname);
         }
         free(ext0);
     }
 
     closedir(dirp);
+    ARLOGi("Upload queue holds %d file(s) from earlier runs.\n", handle->queueLength);
+}
 
-    return (*buf != '\0');
+// Adds one index file's fields to a form. With slot >= 0 the field names get an "[slot]"
+// suffix so several index files can share one POST.
+static bool addIndexToForm(const UPLOAD_QUEUE_ENTRY_t *entry, int slot, struct curl_httppost **post,
+                           struct curl_httppost **last) {
+    FILE *fp;
+    char buf[1024];
+    char name[128];
+    bool added = false;
+
+    if (!(fp = fopen(entry->indexPathname, "rb"))) {
+        ARLOGe("Error opening upload queue file '%s'.\n", entry->indexPathname);
+        return (false);
+    }
+
+    // Read lines from the file, creating curl parameters for each one.
+    while (get_buff(buf, sizeof(buf), fp, true)) {
+
+        // Locate first comma on line, and split the string there.
+        char *commaPos;
+        if (!(commaPos = strchr(buf, ','))) continue; // No comma found! Skip line.
+        *commaPos = '\0';
+
+        if (slot < 0) snprintf(name, sizeof(name), "%s", buf);
+        else snprintf(name, sizeof(name), "%s[%d]", buf, slot);
+
+        if (strcmp(buf, "file") ==
+            0) { // Handle the 'file' parameter by using CURLFORM_FILE. All other params use CURLFORM_COPYCONTENTS.
+            curl_formadd(post, last, CURLFORM_COPYNAME, name, CURLFORM_FILE, commaPos + 1,
+                         CURLFORM_FILENAME, arUtilGetFileNameFromPath(commaPos + 1),
+                         CURLFORM_CONTENTTYPE, "application/octet-stream", CURLFORM_END);
+        } else {
+            curl_formadd(post, last, CURLFORM_COPYNAME, name, CURLFORM_COPYCONTENTS,
+                         commaPos + 1, CURLFORM_END);
+        }
+        added = true;
+    }
+
+    fclose(fp);
+    return (added);
 }
 
 // ---------------------------------------------------------------------------
@@ -151,6 +415,11 @@ FILE_UPLOAD_HANDLE_t *fileUploaderInit(const char queueDirPath[6], const char fo
     }
 
     pthread_mutex_init(&(handle->uploadStatusLock), NULL);
+    pthread_mutex_init(&(handle->queueLock), NULL);
+    pthread_cond_init(&(handle->retryCond), NULL);
+
+    // The directory is only scanned here; afterwards fileUploaderEnqueue() keeps the queue current.
+    queueRebuild(handle);
 
     // Spawn the file upload worker thread.
     ARLOGd("About to call threadInit");
@@ -163,12 +432,28 @@ void fileUploaderFinal(FILE_UPLOAD_HANDLE_t **handle_p) {
     if (!handle_p || !*handle_p) return;
 
     if ((*handle_p)->uploadThread) {
+        // Wake the thread if it is waiting to retry.
+        pthread_mutex_lock(&((*handle_p)->queueLock));
+        (*handle_p)->quit = true;
+        pthread_cond_broadcast(&((*handle_p)->retryCond));
+        pthread_mutex_unlock(&((*handle_p)->queueLock));
+
         threadWaitQuit((*handle_p)->uploadThread);
         threadFree(&((*handle_p)->uploadThread));
     }
 
     pthread_mutex_destroy(&((*handle_p)->uploadStatusLock));
 
+    // Queued files stay on disk for the next run.
+    UPLOAD_QUEUE_ENTRY_t *entry = (*handle_p)->queueHead;
+    while (entry) {
+        UPLOAD_QUEUE_ENTRY_t *next = entry->next;
+        freeQueueEntry(entry);
+        entry = next;
+    }
+    pthread_cond_destroy(&((*handle_p)->retryCond));
+    pthread_mutex_destroy(&((*handle_p)->queueLock));
+
     // CURL final.
     curl_global_cleanup();
 
@@ -223,25 +508,158 @@ bool fileUploaderTickle(FILE_UPLOAD_HANDLE_t *handle) {
     return (true);
 }
 
+bool fileUploaderEnqueue(FILE_UPLOAD_HANDLE_t *handle, const char *indexPathname) {
+
+    ARLOGd("Entered fileUploaderEnqueue with handle: %p, indexPathname: %s",handle,indexPathname);
+    if (!handle || !indexPathname) return (false);
+
+    if (!queueAdd(handle, indexPathname)) return (true); // Duplicate, nothing new to upload.
+
+    threadStartSignal(handle->uploadThread);
+
+    return (true);
+}
+
+static bool setupTransferHandle(UPLOAD_TRANSFER_t *transfer, const char *url) {
+    CURLcode curlErr;
+
+    if (!transfer->curl) {
+        ARLOGd("Creating a curl handle because we don't have one yet.");
+        if (!(transfer->curl = curl_easy_init())) {
+            ARLOGe("Error initialising CURL.\n");
+            return (false);
+        }
+        curlErr = curl_easy_setopt(transfer->curl, CURLOPT_ERRORBUFFER, transfer->errorBuf);
+        if (curlErr == CURLE_OK) curlErr = curl_easy_setopt(transfer->curl, CURLOPT_TCP_KEEPALIVE, 1L);
+        if (curlErr == CURLE_OK) curlErr = curl_easy_setopt(transfer->curl, CURLOPT_CONNECTTIMEOUT, 30L);
+        // Give up on a transfer that stalls below 1 byte/s for a minute.
+        if (curlErr == CURLE_OK) curlErr = curl_easy_setopt(transfer->curl, CURLOPT_LOW_SPEED_LIMIT, 1L);
+        if (curlErr == CURLE_OK) curlErr = curl_easy_setopt(transfer->curl, CURLOPT_LOW_SPEED_TIME, 60L);
+        // HACK TO WORK AROUND ISSUE OF MISSING CAfile (default: /etc/ssl/certs/ca-certificates.crt) AND EMPTY CApath.
+        // TODO: Supply our own certificate for omega.artoolworks.com.
+        if (curlErr == CURLE_OK) curlErr = curl_easy_setopt(transfer->curl, CURLOPT_SSL_VERIFYPEER, 0L);
+        if (curlErr != CURLE_OK) {
+            ARLOGe("Error setting CURL options: %s (%d)\n", curl_easy_strerror(curlErr), curlErr);
+            curl_easy_cleanup(transfer->curl);
+            transfer->curl = NULL;
+            return (false);
+        }
+    }
+
+    curlErr = curl_easy_setopt(transfer->curl, CURLOPT_URL, url);
+    if (curlErr != CURLE_OK) {
+        ARLOGe("Error setting CURL URL: %s (%d)\n", curl_easy_strerror(curlErr), curlErr);
+        return (false);
+    }
+    return (true);
+}
+
+// Builds the form for the transfer's entries and adds it to the multi handle.
+static bool startTransfer(CURLM *multi, UPLOAD_TRANSFER_t *transfer, const char *url) {
+    struct curl_httppost *last = NULL;
+    CURLcode curlErr;
+
+    if (!setupTransferHandle(transfer, url)) return (false);
+
+    // A single file is sent with the plain field names, several with indexed ones.
+    transfer->post = NULL;
+    int added = 0;
+    for (int i = 0; i < transfer->count; i++) {
+        if (addIndexToForm(transfer->entries[i], transfer->count > 1 ? i : -1, &transfer->post, &last)) added++;
+    }
+
+    // Check that we read every index file.
+    if (added != transfer->count) {
+        ARLOGe("Error reading CURL form data from %d of %d queued file(s).\n",
+               transfer->count - added, transfer->count);
+        curl_formfree(transfer->post);
+        transfer->post = NULL;
+        return (false);
+    }
+
+    // Add a version to the request. Version 2 carries "count" indexed sets of fields.
+    if (transfer->count > 1) {
+        char countAscii[12];
+        snprintf(countAscii, sizeof(countAscii), "%d", transfer->count);
+        curl_formadd(&transfer->post, &last, CURLFORM_COPYNAME, "version", CURLFORM_COPYCONTENTS, "2",
+                     CURLFORM_END);
+        curl_formadd(&transfer->post, &last, CURLFORM_COPYNAME, "count", CURLFORM_COPYCONTENTS,
+                     countAscii, CURLFORM_END);
+    } else {
+        curl_formadd(&transfer->post, &last, CURLFORM_COPYNAME, "version", CURLFORM_COPYCONTENTS, "1",
+                     CURLFORM_END);
+    }
+
+    curlErr = curl_easy_setopt(transfer->curl, CURLOPT_HTTPPOST,
+                               transfer->post); // Automatically sets CURLOPT_NOBODY to 0.
+    if (curlErr != CURLE_OK) {
+        ARLOGe("Error setting CURL form data: %s (%d)\n", curl_easy_strerror(curlErr), curlErr);
+        curl_formfree(transfer->post);
+        transfer->post = NULL;
+        return (false);
+    }
+
+    CURLMcode multiErr = curl_multi_add_handle(multi, transfer->curl);
+    if (multiErr != CURLM_OK) {
+        ARLOGe("Error adding CURL transfer: %s (%d)\n", curl_multi_strerror(multiErr), multiErr);
+        curl_formfree(transfer->post);
+        transfer->post = NULL;
+        return (false);
+    }
+    transfer->busy = true;
+    return (true);
+}
+
+// Classifies a finished transfer: 0 = uploaded, 1 = no Internet access, 2 = network error,
+// 3 = server error, 4 = server refused a batch.
+static int finishTransfer(CURLM *multi, UPLOAD_TRANSFER_t *transfer, CURLcode result) {
+    long http_response = 0;
+    int status;
+
+    if (result != CURLE_OK) {
+        ARLOGe("Error performing CURL operation: %s (%d). %s.\n",
+               curl_easy_strerror(result), result, transfer->errorBuf);
+        // Failing to resolve or reach the host is what we expect (e.g.) when wifi and cell data are off.
+        status = (result == CURLE_COULDNT_RESOLVE_HOST || result == CURLE_COULDNT_CONNECT) ? 1 : 2;
+    } else {
+        curl_easy_getinfo(transfer->curl, CURLINFO_RESPONSE_CODE, &http_response);
+        if (transfer->count > 1 && http_response >= 400 && http_response < 500) {
+            // Server doesn't take version 2 forms.
+            ARLOGi("Server refused a batch of %d files (response %ld), uploading singly.\n",
+                   transfer->count, http_response);
+            status = 4;
+        } else if (http_response != 200) {
+            ARLOGe("Parameter file upload failed: server returned response %ld.\n", http_response);
+            status = 3;
+        } else {
+            ARLOGd("Transfer completed response: %ld", http_response);
+            status = 0;
+        }
+    }
+
+    curl_multi_remove_handle(multi, transfer->curl);
+    curl_formfree(transfer->post); // Free the form resources, regardless of outcome.
+    transfer->post = NULL;
+    transfer->busy = false;
+    return (status);
+}
+
 static void *fileUploader(THREAD_HANDLE_T *threadHandle) {
     FILE_UPLOAD_HANDLE_t *fileUploaderHandle;
-    char *indexUploadPathname;
-    char *filePathname;
-#define BUFSIZE 1024
-    char *buf;
-    CURL *curlHandle = NULL;
-    CURLcode curlErr;
-    char curlErrorBuf[CURL_ERROR_SIZE];
-    long http_response;
+    UPLOAD_TRANSFER_t transfers[FILE_UPLOADER_MAX_TRANSFERS];
+    CURLM *multi;
+    CURLMsg *msg;
+    int msgsLeft;
+    int running;
 
     //Wire up the java status callback methods
     wireupJavaMethods();
 
     ARLOGi("Start fileUploader thread: %p\n",threadHandle);
     fileUploaderHandle = (FILE_UPLOAD_HANDLE_t *) threadGetArg(threadHandle);
-    arMalloc(indexUploadPathname, char, MAXPATHLEN);
-    arMalloc(filePathname, char, MAXPATHLEN);
-    arMalloc(buf, char, BUFSIZE);
+    memset(transfers, 0, sizeof(transfers));
+    multi = curl_multi_init();
+    if (!multi) ARLOGe("Error initialising CURL multi handle.\n");
 
     while (threadStartWait(threadHandle) == 0) {
 #ifdef DEBUG
@@ -259,192 +677,87 @@ static void *fileUploader(THREAD_HANDLE_T *threadHandle) {
 
         pthread_mutex_unlock(&(fileUploaderHandle->uploadStatusLock));
 
+        int uploadsStarted = 0;
         int uploadsDone = 0;
         int errorCode = 0;
+        int active = 0;
 
-        while (getNextFileInQueueWithExtension(fileUploaderHandle->queueDirPath,
-                                               fileUploaderHandle->formExtension,
-                                               indexUploadPathname, MAXPATHLEN)) {
-
-            pthread_mutex_lock(&(fileUploaderHandle->uploadStatusLock));
-            snprintf(fileUploaderHandle->uploadStatus, UPLOAD_STATUS_BUFFER_LEN,
-                     "Uploading file %d", uploadsDone + 1);
-            ARLOGd("1 Start uploading file %d", uploadsDone + 1);
-            jstr = env->NewStringUTF(fileUploaderHandle->uploadStatus);
-            env->CallVoidMethod(objectCameraCalibActivity,addUploadStatusText,jstr);
-
-            pthread_mutex_unlock(&(fileUploaderHandle->uploadStatusLock));
-
-            FILE *fp;
-            if (!(fp = fopen(indexUploadPathname, "rb"))) {
-                ARLOGe("Error opening upload queue file '%s'.\n", indexUploadPathname);
-                errorCode = -1;
-                break;
-            }
-            ARLOGd("2 Upload queue opened");
-            //
-            // cURL upload.
-            //
-
-            if (!curlHandle) {
-                ARLOGd("3 Creating a curl handle because we don't have one jet.");
-                curlHandle = curl_easy_init();
-                if (!curlHandle) {
-                    ARLOGe("Error initialising CURL.\n");
-                    errorCode = -1;
-                    break;
-                }
-                ARLOGd("4 curl handle initialized");
-                curlErr = curl_easy_setopt(curlHandle, CURLOPT_ERRORBUFFER, curlErrorBuf);
-                if (curlErr != CURLE_OK) {
-                    ARLOGd("Error setting CURL error buffer: %s (%d)\n",
-                           curl_easy_strerror(curlErr), curlErr);
-                    errorCode = -1;
-                    break;
-                }
-
-                // First, attempt a connection to a well-known site. If this fails, assume we have no
-                // internet access at all.
-                curlErr = curl_easy_setopt(curlHandle, CURLOPT_URL, "http://www.google.com");
-                if (curlErr != CURLE_OK) {
-                    ARLOGe("Error setting CURL URL: %s (%d)\n", curl_easy_strerror(curlErr),
-                           curlErr);
-                    errorCode = -1;
-                    break;
-                }
+        if (!multi) {
+            errorCode = -1;
+        } else if (strcmp("", fileUploaderHandle->formPostURL) == 0) {
+            ARLOGe("No upload URL provided. Stop");
+            errorCode = -1;
+        }
 
-                curlErr = curl_easy_setopt(curlHandle, CURLOPT_NOBODY, 1L); // Headers only.
-                if (curlErr != CURLE_OK) {
-                    ARLOGe("Error setting CURL URL: %s (%d)\n", curl_easy_strerror(curlErr),
-                           curlErr);
+        // Keep up to FILE_UPLOADER_MAX_TRANSFERS uploads going until the queue is drained.
+        // After the first failure no new uploads are started, but running ones may finish.
+        while (true) {
+            for (int i = 0; i < FILE_UPLOADER_MAX_TRANSFERS && !errorCode && !fileUploaderHandle->quit; i++) {
+                UPLOAD_TRANSFER_t *transfer = &transfers[i];
+                if (transfer->busy) continue;
+                transfer->count = queueTake(fileUploaderHandle, transfer->entries,
+                                            fileUploaderHandle->batchRejected ? 1 : FILE_UPLOADER_BATCH_MAX);
+                if (!transfer->count) break;
+                if (!startTransfer(multi, transfer, fileUploaderHandle->formPostURL)) {
+                    queueRelease(fileUploaderHandle, transfer->entries, transfer->count);
                     errorCode = -1;
                     break;
                 }
+                active++;
 
-                curlErr = curl_easy_perform(curlHandle);
-                if (curlErr != CURLE_OK) {
-                    // No need to report error, since we expect it (e.g.) when wifi and cell data are off or if permissions are missing
-                    // Typical first error in these cases is failure to resolve the hostname.
-                    //LOGE("Error performing CURL network test: %s (%d). %s.\n", curl_easy_strerror(curlErr), curlErr, curlErrorBuf);
-
-                    // Update indicator that shows that we cannot connect to the internet
-                    errorCode = 1;
-                    break;
+                pthread_mutex_lock(&(fileUploaderHandle->uploadStatusLock));
+                if (transfer->count > 1) {
+                    snprintf(fileUploaderHandle->uploadStatus, UPLOAD_STATUS_BUFFER_LEN,
+                             "Uploading files %d to %d", uploadsStarted + 1, uploadsStarted + transfer->count);
+                } else {
+                    snprintf(fileUploaderHandle->uploadStatus, UPLOAD_STATUS_BUFFER_LEN,
+                             "Uploading file %d", uploadsStarted + 1);
                 }
-                ARLOGd("5 Able to connect to www.google.com proceeding");
+                ARLOGd("Start uploading %d file(s) after %d", transfer->count, uploadsStarted);
+                jstr = env->NewStringUTF(fileUploaderHandle->uploadStatus);
+                env->CallVoidMethod(objectCameraCalibActivity,addUploadStatusText,jstr);
+                pthread_mutex_unlock(&(fileUploaderHandle->uploadStatusLock));
+                uploadsStarted += transfer->count;
             }
-
-            ARLOGd("6 We have a curl handle. Continue ...");
-            if(strcmp("",fileUploaderHandle->formPostURL) != 0) {
-                // Network OK, so proceed with upload.
-                curlErr = curl_easy_setopt(curlHandle, CURLOPT_URL,
-                                           fileUploaderHandle->formPostURL);
-                if (curlErr != CURLE_OK) {
-                    ARLOGe("Error setting CURL URL: %s (%d)\n", curl_easy_strerror(curlErr),
-                           curlErr);
-                    errorCode = -1;
-                    break;
+            if (!active) break;
+
+            curl_multi_perform(multi, &running);
+            while ((msg = curl_multi_info_read(multi, &msgsLeft))) {
+                if (msg->msg != CURLMSG_DONE) continue;
+                UPLOAD_TRANSFER_t *transfer = NULL;
+                for (int i = 0; i < FILE_UPLOADER_MAX_TRANSFERS; i++) {
+                    if (transfers[i].busy && transfers[i].curl == msg->easy_handle) transfer = &transfers[i];
                 }
-            }else{
-                ARLOGe("No upload URL provided. Stop");
-                errorCode = -1;
-                break;
-            }
-
-            // HACK TO WORK AROUND ISSUE OF MISSING CAfile (default: /etc/ssl/certs/ca-certificates.crt) AND EMPTY CApath.
-            // TODO: Supply our own certificate for omega.artoolworks.com.
-            curlErr = curl_easy_setopt(curlHandle, CURLOPT_SSL_VERIFYPEER, 0L);
-            if (curlErr != CURLE_OK) {
-                ARLOGe("Error setting CURL SSL options: %s (%d)\n", curl_easy_strerror(curlErr),
-                       curlErr);
-                errorCode = -1;
-                break;
-            }
-
-            // Build the form.
-            struct curl_httppost *post = NULL;
-            struct curl_httppost *last = NULL;
-
-            // Read lines from the file, creating curl parameters for each one.
-            *filePathname = '\0';
-            while (get_buff(buf, BUFSIZE, fp, true)) {
-
-                // Locate first comma on line, and split the string there.
-                char *commaPos;
-                if (!(commaPos = strchr(buf, ','))) continue; // No comma found! Skip line.
-                *commaPos = '\0';
-
-                if (strcmp(buf, "file") ==
-                    0) { // Handle the 'file' parameter by using CURLFORM_FILE. All other params use CURLFORM_COPYCONTENTS.
-                    strcpy(filePathname, commaPos + 1);
-                    curl_formadd(&post, &last, CURLFORM_COPYNAME, buf, CURLFORM_FILE, commaPos + 1,
-                                 CURLFORM_FILENAME, arUtilGetFileNameFromPath(commaPos + 1),
-                                 CURLFORM_CONTENTTYPE, "application/octet-stream", CURLFORM_END);
+                if (!transfer) continue;
+
+                int status = finishTransfer(multi, transfer, msg->data.result);
+                active--;
+                if (status == 0) {
+                    // Uploaded OK, so delete uploaded parameters files and indexes.
+                    queueRemove(fileUploaderHandle, transfer->entries, transfer->count);
+                    uploadsDone += transfer->count;
                 } else {
-                    curl_formadd(&post, &last, CURLFORM_COPYNAME, buf, CURLFORM_COPYCONTENTS,
-                                 commaPos + 1, CURLFORM_END);
+                    queueRelease(fileUploaderHandle, transfer->entries, transfer->count);
+                    uploadsStarted -= transfer->count;
+                    if (status == 4) fileUploaderHandle->batchRejected = true;
+                    else if (!errorCode) errorCode = status;
                 }
             }
-
-            fclose(fp);
-
-            // Check that we read at least 1 form parameter.
-            if (!post) {
-                ARLOGe("Error reading CURL form data from file '%s'.\n", indexUploadPathname);
-                errorCode = -1;
-                break;
-            }
-
-            // Add a version to the request.
-            curl_formadd(&post, &last, CURLFORM_COPYNAME, "version", CURLFORM_COPYCONTENTS, "1",
-                         CURLFORM_END);
-
-            curlErr = curl_easy_setopt(curlHandle, CURLOPT_HTTPPOST,
-                                       post); // Automatically sets CURLOPT_NOBODY to 0.
-            if (curlErr != CURLE_OK) {
-                ARLOGe("Error setting CURL form data: %s (%d)\n", curl_easy_strerror(curlErr),
-                       curlErr);
-                errorCode = -1;
-                break;
+            if (running) curl_multi_wait(multi, NULL, 0, 1000, NULL);
+        } // while(true)
+
+        // Network and server errors are retried after a backoff delay; others wait for a tickle.
+        uint32_t retryMillis = 0;
+        if (errorCode > 0) {
+            fileUploaderHandle->failedPasses++;
+            if (!queueIsEmpty(fileUploaderHandle)) {
+                retryMillis = retryDelayMillis(fileUploaderHandle->failedPasses);
+                ARLOGi("Upload failed %d time(s) in a row, retrying in %u ms.\n",
+                       fileUploaderHandle->failedPasses, retryMillis);
             }
-
-            // Perform the transfer. Blocks until complete.
-            ARLOGd("Perform the transfer. Blocks until complete");
-            curlErr = curl_easy_perform(curlHandle);
-            curl_formfree(post); // Free the form resources, regardless of outcome.
-            if (curlErr != CURLE_OK) {
-                ARLOGe("Error performing CURL operation: %s (%d). %s.\n",
-                       curl_easy_strerror(curlErr), curlErr, curlErrorBuf);
-                errorCode = 2;
-                break;
-            }
-            ARLOGd("Transfer completed");
-
-
-            curl_easy_getinfo (curlHandle, CURLINFO_RESPONSE_CODE, &http_response);
-            if (http_response != 200) {
-                ARLOGe("Parameter file upload failed: server returned response %ld.\n",
-                       http_response);
-
-                // Update indicator that shows that we cannot connect to the calibration server
-
-                errorCode = 3;
-                break;
-            }
-            ARLOGd("Transfer completed response: %ld",http_response);
-
-            // Uploaded OK, so delete uploaded parameters file and index.
-            if (remove(indexUploadPathname) < 0) {
-                ARLOGe("Error removing index file '%s' after upload.\n", indexUploadPathname);
-                ARLOGperror(NULL);
-            }
-            if (remove(filePathname) < 0) {
-                ARLOGe("Error removing file '%s' after upload.\n", filePathname);
-                ARLOGperror(NULL);
-            }
-
-            uploadsDone++;
-        } // while(getNextFileInQueueWithExtension)
+        } else if (!errorCode) {
+            fileUploaderHandle->failedPasses = 0;
+        }
 
         pthread_mutex_lock(&(fileUploaderHandle->uploadStatusLock));
 
@@ -495,17 +808,22 @@ static void *fileUploader(THREAD_HANDLE_T *threadHandle) {
         ARLOGe("file uploader is DONE\n");
 #endif
         threadEndSignal(threadHandle);
+
+        // Start the next pass ourselves once the delay is up. A tickle or enqueue meanwhile
+        // is latched, and doesn't cut the delay short.
+        if (retryMillis && waitForRetry(fileUploaderHandle, retryMillis)) threadStartSignal(threadHandle);
     }
 
-    // Cleanup curl handle before thread exit.
-    if (curlHandle) {
-        curl_easy_cleanup(curlHandle);
-        curlHandle = NULL;
+    // Cleanup curl handles before thread exit.
+    for (int i = 0; i < FILE_UPLOADER_MAX_TRANSFERS; i++) {
+        if (transfers[i].busy) {
+            curl_multi_remove_handle(multi, transfers[i].curl);
+            curl_formfree(transfers[i].post);
+        }
+        if (transfers[i].curl) curl_easy_cleanup(transfers[i].curl);
     }
+    if (multi) curl_multi_cleanup(multi);
 
-    free(buf);
-    free(filePathname);
-    free(indexUploadPathname);
     if(isJvmAttached)
         jvm->DetachCurrentThread();
 
@@ -30,8 +30,16 @@
 //
 // HTML form and file uploader via HTTP POST.
 //
-// When tickled, each index file in "queueDirPath" with extension "formExtension" will be opened
-// and read for form data to be uploaded to URL "formPostURL" via HTTP POST.
+// Index files in "queueDirPath" with extension "formExtension" are read for form data to be
+// uploaded to URL "formPostURL" via HTTP POST. The directory is scanned once, at init; index files
+// written later must be handed over with fileUploaderEnqueue(). Up to FILE_UPLOADER_BATCH_MAX
+// queued index files are sent in one POST, with "[n]" appended to each field name, "version" 2
+// and a "count" field. If the server refuses such a POST, one index file is sent per request.
+// An index file whose 'file' has the same contents as one already queued is deleted unsent.
+// Up to FILE_UPLOADER_MAX_TRANSFERS POSTs run at once over kept-alive connections. No host other
+// than "formPostURL" is contacted, so it can point at a local HTTP stand-in for testing.
+// After a network or server error the queue is retried with exponential backoff and jitter,
+// from FILE_UPLOADER_BACKOFF_BASE_SECS up to FILE_UPLOADER_BACKOFF_MAX_SECS.
 // The format of the index file is 1 form field per line. From the beginning of the line up to
 // the first ',' character is taken as the field name. The rest of the line after the ','
 // up to the end-of-line is taken as the field contents.
@@ -58,6 +66,10 @@ extern "C" {
 #endif
 
 #define UPLOAD_STATUS_BUFFER_LEN 128
+#define FILE_UPLOADER_BATCH_MAX 8
+#define FILE_UPLOADER_MAX_TRANSFERS 3
+#define FILE_UPLOADER_BACKOFF_BASE_SECS 2
+#define FILE_UPLOADER_BACKOFF_MAX_SECS 600
 
 typedef struct _FILE_UPLOAD_HANDLE FILE_UPLOAD_HANDLE_t;
 
@@ -73,8 +85,12 @@ void fileUploaderFinal(FILE_UPLOAD_HANDLE_t **handle_p);
 bool fileUploaderCreateDir(char* path);
 
 
+// Wake the upload thread to retry whatever is queued.
 bool fileUploaderTickle(FILE_UPLOAD_HANDLE_t *handle);
 
+// Queue a complete index file (already renamed to "formExtension") and wake the upload thread.
+bool fileUploaderEnqueue(FILE_UPLOAD_HANDLE_t *handle, const char *indexPathname);
+
 // -2 = An error.
 // 0 = no background tasks or messages.
 // 1 = background task currently in progress.
@@ -2,7 +2,8 @@ package org.archecker.artoolkitgame;
 
 import android.app.Application;
 
-import org.artoolkit.ar.base.assets.AssetHelper;
+import org.archecker.startup.AppStartup;
+import org.artoolkit.ar.base.assets.AssetCache;
 
 public class ARGameApplication extends Application {
 
@@ -20,7 +21,15 @@ public class ARGameApplication extends Application {
     }
 
     protected void initializeInstance() {
-		AssetHelper assetHelper = new AssetHelper(getAssets());        
-		assetHelper.cacheAssetFolder(getInstance(), "Data");
+		// Loads the native libraries and caches the "Data" folder in the background.
+		AppStartup.get(this);
+    }
+
+    /**
+     * The cached "Data" folder; wait on its futures before reading files from it. Null until
+     * the {@link AppStartup#ASSETS} subsystem has started.
+     */
+    public AssetCache getAssetCache() {
+    	return AppStartup.get(this).getAssetCache();
     }
 }
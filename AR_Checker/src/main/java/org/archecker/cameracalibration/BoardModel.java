@@ -0,0 +1,124 @@
+package org.archecker.cameracalibration;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint3f;
+import org.opencv.core.Size;
+
+/**
+ * Object points of a calibration board, in metres on the z = 0 plane. Models are cached per
+ * (pattern size, field size, layout) and shared, so their Mats must never be written to.
+ */
+public final class BoardModel {
+    public enum Layout {
+        /** Every other row is shifted by one field, as printed on the calibration sheet. */
+        ASYMMETRIC,
+        SYMMETRIC
+    }
+
+    private static final ConcurrentHashMap<Key, BoardModel> CACHE = new ConcurrentHashMap<>();
+
+    private final Size patternSize;
+    private final double fieldSize;
+    private final Layout layout;
+    private final MatOfPoint3f objectPoints;
+
+    private BoardModel(Key key) {
+        patternSize = new Size(key.cols, key.rows);
+        fieldSize = key.fieldSize;
+        layout = key.layout;
+
+        final int cn = 3;
+        float[] positions = new float[key.cols * key.rows * cn];
+        for (int i = 0; i < key.rows; i++) {
+            for (int j = 0; j < key.cols; j++) {
+                int offset = (i * key.cols + j) * cn;
+                float column = layout == Layout.ASYMMETRIC ? 2 * j + i % 2 : j;
+                positions[offset] = column * (float) fieldSize;
+                positions[offset + 1] = i * (float) fieldSize;
+                positions[offset + 2] = 0;
+            }
+        }
+        objectPoints = new MatOfPoint3f();
+        objectPoints.create(key.cols * key.rows, 1, CvType.CV_32FC3);
+        objectPoints.put(0, 0, positions);
+    }
+
+    public static BoardModel get(Size patternSize, double fieldSize, Layout layout) {
+        Key key = new Key((int) patternSize.width, (int) patternSize.height, fieldSize, layout);
+        BoardModel model = CACHE.get(key);
+        if (model == null) {
+            BoardModel created = new BoardModel(key);
+            model = CACHE.putIfAbsent(key, created);
+            if (model == null) {
+                model = created;
+            } else {
+                created.objectPoints.release();
+            }
+        }
+        return model;
+    }
+
+    public Size getPatternSize() {
+        return patternSize.clone();
+    }
+
+    public int getCornerCount() {
+        return (int) (patternSize.width * patternSize.height);
+    }
+
+    public double getFieldSize() {
+        return fieldSize;
+    }
+
+    public Layout getLayout() {
+        return layout;
+    }
+
+    /** Shared, read-only object points of one view. */
+    public MatOfPoint3f getObjectPoints() {
+        return objectPoints;
+    }
+
+    /** The shared object points repeated once per view, as calibrateCamera expects them. */
+    public List<Mat> getObjectPoints(int views) {
+        return Collections.<Mat>nCopies(views, objectPoints);
+    }
+
+    private static final class Key {
+        final int cols;
+        final int rows;
+        final double fieldSize;
+        final Layout layout;
+
+        Key(int cols, int rows, double fieldSize, Layout layout) {
+            this.cols = cols;
+            this.rows = rows;
+            this.fieldSize = fieldSize;
+            this.layout = layout;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return cols == other.cols && rows == other.rows
+                    && Double.compare(fieldSize, other.fieldSize) == 0 && layout == other.layout;
+        }
+
+        @Override
+        public int hashCode() {
+            long bits = Double.doubleToLongBits(fieldSize);
+            int result = cols;
+            result = 31 * result + rows;
+            result = 31 * result + (int) (bits ^ (bits >>> 32));
+            return 31 * result + layout.hashCode();
+        }
+    }
+}
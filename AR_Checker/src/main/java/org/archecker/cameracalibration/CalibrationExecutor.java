@@ -0,0 +1,169 @@
+package org.archecker.cameracalibration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+/**
+ * Runs calibrations on a single background thread, so there is never more than one solve at a
+ * time. Requests arriving while a solve runs are coalesced into one follow-up solve and the
+ * running one is cancelled at its next stage, as its result would be superseded anyway.
+ * Listener callbacks are delivered on the main thread.
+ */
+public class CalibrationExecutor {
+    private static final String TAG = "CalibrationExecutor";
+
+    public interface Listener {
+        void onCalibrationProgress(CameraCalibrator calibrator, int stage, int stages);
+
+        /**
+         * @param notify true if any of the coalesced requests asked for the result to be shown
+         */
+        void onCalibrationPublished(CameraCalibrator calibrator, boolean notify);
+
+        void onCalibrationFailed(CameraCalibrator calibrator, boolean notify);
+
+        /** No solve is running or pending. */
+        void onCalibrationIdle();
+    }
+
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Listener listener;
+
+    // Guarded by this.
+    private CameraCalibrator pending;
+    private boolean pendingNotify;
+    private boolean draining;
+    private int generation;
+
+    public CalibrationExecutor(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Schedules a calibration of the captured views. A solve already running for older views
+     * is cancelled.
+     */
+    public synchronized void request(CameraCalibrator calibrator, boolean notify) {
+        pendingNotify = notify || (pending != null && pendingNotify);
+        pending = calibrator;
+        generation++;
+        if (!draining) {
+            draining = true;
+            worker.execute(drain);
+        }
+    }
+
+    /** Drops the pending request and cancels the running solve. */
+    public synchronized void cancel() {
+        pending = null;
+        pendingNotify = false;
+        generation++;
+    }
+
+    public synchronized boolean isBusy() {
+        return draining;
+    }
+
+    public void shutdown() {
+        cancel();
+        worker.shutdown();
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+
+    private synchronized boolean isCurrent(int job) {
+        return generation == job;
+    }
+
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            while (true) {
+                CameraCalibrator calibrator;
+                boolean notify;
+                int job;
+                synchronized (CalibrationExecutor.this) {
+                    calibrator = pending;
+                    notify = pendingNotify;
+                    job = generation;
+                    pending = null;
+                    pendingNotify = false;
+                    if (calibrator == null) {
+                        draining = false;
+                        break;
+                    }
+                }
+                solve(calibrator, notify, job);
+            }
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!isBusy()) {
+                        listener.onCalibrationIdle();
+                    }
+                }
+            });
+        }
+    };
+
+    private void solve(final CameraCalibrator calibrator, final boolean notify, final int job) {
+        CameraCalibrator.Solution solution;
+        try {
+            solution = calibrator.solve(new CameraCalibrator.SolveMonitor() {
+                @Override
+                public void onStage(final int stage, final int stages) {
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.onCalibrationProgress(calibrator, stage, stages);
+                        }
+                    });
+                }
+
+                @Override
+                public boolean isCancelled() {
+                    return !isCurrent(job);
+                }
+            });
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Calibration failed: " + e.getLocalizedMessage());
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    listener.onCalibrationFailed(calibrator, notify);
+                }
+            });
+            return;
+        }
+
+        if (solution == null) {
+            Log.i(TAG, "Calibration superseded, discarded");
+            // A superseded notifying request hands its notification on to the next solve.
+            synchronized (this) {
+                if (pending != null) {
+                    pendingNotify |= notify;
+                }
+            }
+            return;
+        }
+        calibrator.publish(solution);
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onCalibrationPublished(calibrator, notify);
+            }
+        });
+    }
+}
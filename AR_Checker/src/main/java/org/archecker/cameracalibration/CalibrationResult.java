@@ -1,67 +1,112 @@
 package org.archecker.cameracalibration;
 
+import java.nio.ByteBuffer;
+
 import org.opencv.core.Mat;
-import android.app.Activity;
-import android.content.Context;
-import android.content.SharedPreferences;
-import android.util.Log;
-abstract class CalibrationResult {
-    private static final String TAG = "CalibrationResult";
 
+/**
+ * One stored calibration: the intrinsics at full double precision and the error statistics
+ * of the solve that produced them. Records are kept by {@link CalibrationStore}.
+ */
+final class CalibrationResult {
     public static final int CAMERA_MATRIX_ROWS = 3;
     public static final int CAMERA_MATRIX_COLS = 3;
     public static final int DISTORTION_COEFFICIENTS_SIZE = 5;
 
-    public static void save(Activity activity, Mat cameraMatrix, Mat distortionCoefficients,int width,int height) {
-        SharedPreferences sharedPref = activity.getPreferences(Context.MODE_PRIVATE);
-        SharedPreferences.Editor editor = sharedPref.edit();
+    final double[] cameraMatrix;
+    final double[] distortionCoefficients;
+    final double rms;
+    final float meanViewError;
+    final float minViewError;
+    final float maxViewError;
+    final int views;
+    /** Wall clock time of the calibration in milliseconds. */
+    final long timestamp;
 
-        double[] cameraMatrixArray = new double[CAMERA_MATRIX_ROWS * CAMERA_MATRIX_COLS];
-        cameraMatrix.get(0,  0, cameraMatrixArray);
-        for (int i = 0; i < CAMERA_MATRIX_ROWS; i++) {
-            for (int j = 0; j < CAMERA_MATRIX_COLS; j++) {
-                Integer id = i * CAMERA_MATRIX_ROWS + j;
-                editor.putFloat(width + "x" + height+ ":"+id.toString(), (float)cameraMatrixArray[id]);
-            }
-        }
+    CalibrationResult(double[] cameraMatrix, double[] distortionCoefficients, double rms,
+                      float meanViewError, float minViewError, float maxViewError, int views,
+                      long timestamp) {
+        this.cameraMatrix = cameraMatrix;
+        this.distortionCoefficients = distortionCoefficients;
+        this.rms = rms;
+        this.meanViewError = meanViewError;
+        this.minViewError = minViewError;
+        this.maxViewError = maxViewError;
+        this.views = views;
+        this.timestamp = timestamp;
+    }
+
+    /** The published calibration of the calibrator. */
+    static CalibrationResult of(CameraCalibrator calibrator) {
+        double[] cameraMatrix = new double[CAMERA_MATRIX_ROWS * CAMERA_MATRIX_COLS];
+        double[] distortionCoefficients = new double[DISTORTION_COEFFICIENTS_SIZE];
+        Mat cameraMatrixMat = new Mat();
+        Mat distortionMat = new Mat();
+        calibrator.copyIntrinsics(cameraMatrixMat, distortionMat);
+        cameraMatrixMat.get(0, 0, cameraMatrix);
+        distortionMat.get(0, 0, distortionCoefficients);
+        cameraMatrixMat.release();
+        distortionMat.release();
 
-        double[] distortionCoefficientsArray = new double[DISTORTION_COEFFICIENTS_SIZE];
-        distortionCoefficients.get(0, 0, distortionCoefficientsArray);
-        int shift = CAMERA_MATRIX_ROWS * CAMERA_MATRIX_COLS;
-        for (Integer i = shift; i < DISTORTION_COEFFICIENTS_SIZE + shift; i++) {
-            editor.putFloat(i.toString(), (float)distortionCoefficientsArray[i-shift]);
+        ReprojectionErrors errors = calibrator.getReprojectionStatistics();
+        if (errors == null) {
+            return new CalibrationResult(cameraMatrix, distortionCoefficients, calibrator.getAvgReprojectionError(),
+                    0, 0, 0, 0, System.currentTimeMillis());
         }
-        editor.apply();
-        Log.i(TAG, "Saved camera matrix: " + cameraMatrix.dump());
-        Log.i(TAG, "Saved distortion coefficients: " + distortionCoefficients.dump());
+        return new CalibrationResult(cameraMatrix, distortionCoefficients, errors.getRms(),
+                errors.getMeanViewError(), errors.getMinViewError(), errors.getMaxViewError(),
+                errors.getViewCount(), System.currentTimeMillis());
     }
 
+    void applyTo(Mat cameraMatrix, Mat distortionCoefficients) {
+        cameraMatrix.put(0, 0, this.cameraMatrix);
+        distortionCoefficients.put(0, 0, this.distortionCoefficients);
+    }
 
-    public static boolean tryLoad(Activity activity, Mat cameraMatrix, Mat distortionCoefficients, int width, int height) {
-        SharedPreferences sharedPref = activity.getPreferences(Context.MODE_PRIVATE);
-        if (sharedPref.getFloat(width + "x" + height+ ":0", -1) == -1) {
-            Log.i(TAG, "No previous calibration results found");
-            return false;
-        }
+    int encodedBytes() {
+        return 8 * (cameraMatrix.length + distortionCoefficients.length + 2) + 4 * 6;
+    }
 
-        double[] cameraMatrixArray = new double[CAMERA_MATRIX_ROWS * CAMERA_MATRIX_COLS];
-        for (int i = 0; i < CAMERA_MATRIX_ROWS; i++) {
-            for (int j = 0; j < CAMERA_MATRIX_COLS; j++) {
-                Integer id = i * CAMERA_MATRIX_ROWS + j;
-                cameraMatrixArray[id] = sharedPref.getFloat(id.toString(), -1);
-            }
+    void writeTo(ByteBuffer out) {
+        out.putInt(cameraMatrix.length);
+        for (double value : cameraMatrix) {
+            out.putDouble(value);
         }
-        cameraMatrix.put(0, 0, cameraMatrixArray);
-        Log.i(TAG, "Loaded camera matrix: " + cameraMatrix.dump());
-
-        double[] distortionCoefficientsArray = new double[DISTORTION_COEFFICIENTS_SIZE];
-        int shift = CAMERA_MATRIX_ROWS * CAMERA_MATRIX_COLS;
-        for (Integer i = shift; i < DISTORTION_COEFFICIENTS_SIZE + shift; i++) {
-            distortionCoefficientsArray[i - shift] = sharedPref.getFloat(i.toString(), -1);
+        out.putInt(distortionCoefficients.length);
+        for (double value : distortionCoefficients) {
+            out.putDouble(value);
         }
-        distortionCoefficients.put(0, 0, distortionCoefficientsArray);
-        Log.i(TAG, "Loaded distortion coefficients: " + distortionCoefficients.dump());
+        out.putDouble(rms);
+        out.putFloat(meanViewError);
+        out.putFloat(minViewError);
+        out.putFloat(maxViewError);
+        out.putInt(views);
+        out.putLong(timestamp);
+    }
 
-        return true;
+    static CalibrationResult readFrom(ByteBuffer in) {
+        int cameraMatrixLength = in.getInt();
+        if (cameraMatrixLength != CAMERA_MATRIX_ROWS * CAMERA_MATRIX_COLS) {
+            throw new IllegalArgumentException("Camera matrix with " + cameraMatrixLength + " values");
+        }
+        double[] cameraMatrix = new double[cameraMatrixLength];
+        for (int i = 0; i < cameraMatrix.length; i++) {
+            cameraMatrix[i] = in.getDouble();
+        }
+        int distortionLength = in.getInt();
+        if (distortionLength < 0 || distortionLength > DISTORTION_COEFFICIENTS_SIZE) {
+            throw new IllegalArgumentException(distortionLength + " distortion coefficients");
+        }
+        double[] distortionCoefficients = new double[DISTORTION_COEFFICIENTS_SIZE];
+        for (int i = 0; i < distortionLength; i++) {
+            distortionCoefficients[i] = in.getDouble();
+        }
+        double rms = in.getDouble();
+        float mean = in.getFloat();
+        float min = in.getFloat();
+        float max = in.getFloat();
+        int views = in.getInt();
+        long timestamp = in.getLong();
+        return new CalibrationResult(cameraMatrix, distortionCoefficients, rms, mean, min, max, views, timestamp);
     }
 }
@@ -21,10 +21,9 @@ import com.github.mikephil.charting.data.Entry;
 import com.github.mikephil.charting.highlight.Highlight;
 import com.github.mikephil.charting.listener.OnChartValueSelectedListener;
 
-import org.opencv.core.Mat;
-
 import java.util.ArrayList;
 import java.util.List;
+import java.util.TreeSet;
 
 public class CalibrationStatisticsActivity extends Activity implements OnChartValueSelectedListener, View.OnClickListener {
 
@@ -36,8 +35,9 @@ public class CalibrationStatisticsActivity extends Activity implements OnChartVa
     private View calibrationDetail;
     private CameraCalibrator calibrator;
     private int resultCode = RESULT_CANCELED;
-    private List<Float> removedItems = new ArrayList<>();
-    private List<Mat> removedFrames = new ArrayList<>();
+    private TreeSet<Integer> removedFrames = new TreeSet<>();
+    /** Every index passed to removeFrame, in call order, for the caller to compact its journal. */
+    private final ArrayList<Integer> removedViews = new ArrayList<>();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -53,7 +53,7 @@ public class CalibrationStatisticsActivity extends Activity implements OnChartVa
         ImageButtonHandle.setImageButtonEnabled(this.getApplicationContext(),false, startCalibration,R.drawable.ic_done_white_24px);
         calibrationChart = (BarChart) findViewById(R.id.chart);
         calibrationChart.setOnChartValueSelectedListener(this);
-        calibrator = (CameraCalibrator) getIntent().getExtras().getSerializable(CameraCalibrationActivity.INTENT_EXTRA_CAMERA_CALIBRATOR);
+        calibrator = getIntent().getParcelableExtra(CameraCalibrationActivity.INTENT_EXTRA_CAMERA_CALIBRATOR);
         reprojectionArray = calibrator.getReprojectionErrorArrayList();
     }
 
@@ -83,8 +83,7 @@ public class CalibrationStatisticsActivity extends Activity implements OnChartVa
                 Log.i("TAG","Selected value" + selectedValueX);
                 calibrationChart.getData().getDataSetByIndex(0).removeEntryByXPos(selectedValueX);
                 calibrationChart.invalidate();
-                removedFrames.add(calibrator.getFrame(selectedValueX));
-                removedItems.add(reprojectionArray.get(selectedValueX));
+                removedFrames.add(selectedValueX);
             }
             else{
                 Toast toast = Toast.makeText(this, R.string.error_no_selection, Toast.LENGTH_SHORT);
@@ -138,16 +137,13 @@ public class CalibrationStatisticsActivity extends Activity implements OnChartVa
     }
 
     private void applyModification() {
-        for (Float item: removedItems) {
-            reprojectionArray.remove(item);
-        }
-
-        for (Mat frame: removedFrames){
+        // Removal moves the last view into the freed index, so go from the highest index down.
+        for (int frame : removedFrames.descendingSet()) {
             calibrator.removeFrame(frame);
+            removedViews.add(frame);
         }
-
-        removedItems = new ArrayList<>();
-        removedFrames = new ArrayList<>();
+        reprojectionArray = calibrator.getReprojectionErrorArrayList();
+        removedFrames = new TreeSet<>();
     }
 
     @Override
@@ -155,6 +151,11 @@ public class CalibrationStatisticsActivity extends Activity implements OnChartVa
         Intent resultIntent = new Intent();
         if(resultCode == RESULT_OK) {
             resultIntent.putExtra(CameraCalibrationActivity.INTENT_EXTRA_CAMERA_CALIBRATOR, calibrator);
+            int[] removed = new int[removedViews.size()];
+            for (int i = 0; i < removed.length; i++) {
+                removed[i] = removedViews.get(i);
+            }
+            resultIntent.putExtra(CameraCalibrationActivity.INTENT_EXTRA_REMOVED_VIEWS, removed);
         }
         setResult(resultCode, resultIntent);
         super.finish();
@@ -0,0 +1,223 @@
+package org.archecker.cameracalibration;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.content.Context;
+import android.util.Log;
+
+/**
+ * Calibration profiles kept side by side in one binary file, a record per camera, resolution
+ * and calibration model (the calibrateCamera flags). The file is read once, on first use;
+ * every save updates the profiles at once and rewrites the file on a background thread,
+ * through a temporary file so a crash never leaves a partial store.
+ * <p>
+ * Format, big endian: magic, version, record count, then per record the profile key
+ * (camera id, width, height, model) followed by a {@link CalibrationResult}.
+ */
+public class CalibrationStore {
+    private static final String TAG = "CalibrationStore";
+    private static final String FILE_NAME = "calibrations.bin";
+    private static final int MAGIC = 0x43414C53;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 12;
+    private static final int KEY_BYTES = 16;
+
+    private static CalibrationStore sInstance;
+
+    private final File file;
+    private final LinkedHashMap<Profile, CalibrationResult> results = new LinkedHashMap<>();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+
+    CalibrationStore(File file) {
+        this.file = file;
+    }
+
+    public static synchronized CalibrationStore get(Context context) {
+        if (sInstance == null) {
+            sInstance = new CalibrationStore(new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+            sInstance.load();
+        }
+        return sInstance;
+    }
+
+    /** @return the stored calibration of the profile, or null */
+    synchronized CalibrationResult find(int cameraId, int width, int height, int model) {
+        return results.get(new Profile(cameraId, width, height, model));
+    }
+
+    /** Stores the calibration, replacing the earlier one of the same profile only. */
+    synchronized void put(int cameraId, int width, int height, int model, CalibrationResult result) {
+        results.put(new Profile(cameraId, width, height, model), result);
+        final ByteBuffer encoded = encode();
+        writer.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(encoded);
+            }
+        });
+        Log.i(TAG, "Saved calibration for camera " + cameraId + " at " + width + "x" + height
+                + ", " + results.size() + " profiles stored");
+    }
+
+    /**
+     * The RMS error of the calibration of the camera and resolution saved closest to the time,
+     * within toleranceMillis. Exported parameter files don't carry their error, so this is how
+     * they are matched to it.
+     *
+     * @return the RMS error in pixels, or NaN if no calibration was saved around that time
+     */
+    public synchronized double findRms(int cameraId, int width, int height, long time, long toleranceMillis) {
+        double rms = Double.NaN;
+        long closest = toleranceMillis;
+        for (Map.Entry<Profile, CalibrationResult> entry : results.entrySet()) {
+            Profile profile = entry.getKey();
+            if (profile.cameraId != cameraId || profile.width != width || profile.height != height) {
+                continue;
+            }
+            long distance = Math.abs(entry.getValue().timestamp - time);
+            if (distance <= closest) {
+                closest = distance;
+                rms = entry.getValue().rms;
+            }
+        }
+        return rms;
+    }
+
+    synchronized int size() {
+        return results.size();
+    }
+
+    void load() {
+        if (!file.exists()) {
+            return;
+        }
+        byte[] data = new byte[(int) file.length()];
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            in.readFully(data);
+        } catch (IOException e) {
+            Log.e(TAG, "Reading " + file + " failed: " + e.getMessage());
+            return;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        decode(ByteBuffer.wrap(data));
+    }
+
+    /** Adds the profiles of an encoded store, as far as they can be read. */
+    synchronized void decode(ByteBuffer buffer) {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                Log.e(TAG, file + " is not a calibration store");
+                return;
+            }
+            int version = buffer.getInt();
+            if (version > VERSION) {
+                Log.e(TAG, "Calibration store version " + version + " is newer than " + VERSION);
+                return;
+            }
+            int count = buffer.getInt();
+            for (int i = 0; i < count; i++) {
+                Profile profile = new Profile(buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+                results.put(profile, CalibrationResult.readFrom(buffer));
+            }
+            Log.i(TAG, "Loaded " + count + " calibration profiles");
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            Log.e(TAG, "Calibration store is corrupt, keeping " + results.size() + " profiles: " + e);
+        }
+    }
+
+    /** The store as it is written to the file. */
+    synchronized ByteBuffer encode() {
+        int size = HEADER_BYTES;
+        for (CalibrationResult result : results.values()) {
+            size += KEY_BYTES + result.encodedBytes();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putInt(results.size());
+        for (Map.Entry<Profile, CalibrationResult> entry : results.entrySet()) {
+            Profile profile = entry.getKey();
+            buffer.putInt(profile.cameraId);
+            buffer.putInt(profile.width);
+            buffer.putInt(profile.height);
+            buffer.putInt(profile.model);
+            entry.getValue().writeTo(buffer);
+        }
+        return buffer;
+    }
+
+    /** Runs on the writer thread; saves are written in the order they were made. */
+    private void write(ByteBuffer buffer) {
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream out = null;
+        try {
+            out = new FileOutputStream(tmp);
+            out.write(buffer.array(), 0, buffer.position());
+            out.getFD().sync();
+            out.close();
+            out = null;
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Renaming " + tmp + " failed");
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Writing " + file + " failed: " + e.getMessage());
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private static final class Profile {
+        final int cameraId;
+        final int width;
+        final int height;
+        final int model;
+
+        Profile(int cameraId, int width, int height, int model) {
+            this.cameraId = cameraId;
+            this.width = width;
+            this.height = height;
+            this.model = model;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Profile)) {
+                return false;
+            }
+            Profile other = (Profile) o;
+            return cameraId == other.cameraId && width == other.width && height == other.height
+                    && model == other.model;
+        }
+
+        @Override
+        public int hashCode() {
+            return ((cameraId * 31 + width) * 31 + height) * 31 + model;
+        }
+    }
+}
@@ -4,17 +4,18 @@ import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.app.ProgressDialog;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.res.Resources;
 import android.hardware.Camera;
 import android.hardware.camera2.CameraCharacteristics;
 import android.hardware.camera2.CameraManager;
-import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.preference.PreferenceManager;
 import android.util.Log;
+import android.view.MotionEvent;
 import android.view.SurfaceView;
 import android.view.View;
 import android.view.ViewGroup;
@@ -40,10 +41,10 @@ import org.archecker.guide.GuideMode;
 import org.archecker.guide.GuideModeListener;
 import org.archecker.menu.MenuArrayAdapter;
 import org.archecker.share.ShareActivity;
+import org.archecker.startup.AppStartup;
 import org.opencv.android.CameraBridgeViewBase;
 import org.opencv.android.CameraBridgeViewBase.CvCameraViewFrame;
 import org.opencv.android.CameraBridgeViewBase.CvCameraViewListener2;
-import org.opencv.android.StaticHelper;
 import org.opencv.core.Mat;
 
 import java.io.File;
@@ -54,7 +55,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 
 public class CameraCalibrationActivity extends Activity implements CvCameraViewListener2,
-        View.OnClickListener, Animation.AnimationListener, AdapterView.OnItemClickListener, GuideModeListener {
+        View.OnClickListener, View.OnTouchListener, Animation.AnimationListener, AdapterView.OnItemClickListener, GuideModeListener {
     public static final int COMPARE_MENU = 0;
     public static final int UNDISTORETED = 1;
     public static final int NEW_CALIBRATION = 2;
@@ -63,12 +64,20 @@ public class CameraCalibrationActivity extends Activity implements CvCameraViewL
     public static final int CALIB_MESSAGE = 7;
     public static final int CALIB_STATS = 4;
     private static final int CALIBRATION_DETAIL_REQ_CODE = 1;
+    private static final int PYRAMID_DETECTION_MIN_WIDTH = 1280;
     public static final String INTENT_EXTRA_CAMERA_CALIBRATOR = "Calibrator";
+    public static final String INTENT_EXTRA_REMOVED_VIEWS = "RemovedViews";
     public static boolean GUIDE_MODE = false;
     private static final String TAG = "OCVSample::Activity";
     private CameraBridgeViewBase oCvCameraView;
     private CameraCalibrator calibrator;
-    private OnCameraFrameRender renderer;
+    private CalibrationStore calibrationStore;
+    private SessionJournal sessionJournal;
+    private int cameraIndex;
+    /** Holds Mats, so it is only created once OpenCV has loaded. */
+    private FramePipeline pipeline;
+    /** A statistics screen result that arrived before OpenCV had loaded, applied once it has. */
+    private Intent pendingStatisticsResult;
     private int matrixWidth;
     private int matrixHeight;
     private ImageButton startCalibrationButton;
@@ -82,13 +91,14 @@ public class CameraCalibrationActivity extends Activity implements CvCameraViewL
     private ViewGroup compareVideo;
     private SharedPreferences preferences;
     private ProgressBar progress;
+    private CalibrationExecutor calibrationExecutor;
+    private ProgressDialog calibrationProgress;
     private ImageButton guideButton;
     private PopupWindow mPopupWindow;
-    static {
-        System.loadLibrary("c++_shared");
-        System.loadLibrary("calibration_upload_native");
-    }
-    
+    private AppStartup startup;
+    private boolean resumed;
+    private boolean firstFrameShown;
+
     public CameraCalibrationActivity() {
         Log.i(TAG, "Instantiated new " + this.getClass());
     }
@@ -100,21 +110,25 @@ public class CameraCalibrationActivity extends Activity implements CvCameraViewL
     public void onCreate(Bundle savedInstanceState) {
         Log.i(TAG, "call onCreate");
         super.onCreate(savedInstanceState);
-        if (!StaticHelper.initOpenCV(false)) {
-            Log.d(TAG, "OpenCV library not found.");
-            finish();
-        } else {
-            Log.d(TAG, "OpenCV library found.");
-            Log.i(TAG, "OpenCV loaded successfully");
+        // Normally started with the process by ARGameApplication; OpenCV loads while the
+        // views are inflated.
+        startup = AppStartup.get(this);
+        startup.whenReady(AppStartup.OPENCV, openCvListener);
+        if (savedInstanceState == null) {
+            // A fresh start, no statistics screen is left that could still read its payload.
+            ParcelPayload.deleteFiles();
         }
 
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
         setContentView(R.layout.camera_calibration_surface_view);
         preferences = PreferenceManager.getDefaultSharedPreferences(this);
+        calibrationStore = CalibrationStore.get(this);
+        sessionJournal = SessionJournal.get(this);
         oCvCameraView = (CameraBridgeViewBase) findViewById(R.id.camera_calibration_java_surface_view);
         oCvCameraView.setVisibility(SurfaceView.VISIBLE);
         oCvCameraView.setCvCameraViewListener(this);
         oCvCameraView.setOnClickListener(this);
+        oCvCameraView.setOnTouchListener(this);
 
         startCalibrationButton = (ImageButton) findViewById(R.id.button_startCalibration);
         startCalibrationButton.setOnClickListener(this);
@@ -140,12 +154,14 @@ public class CameraCalibrationActivity extends Activity implements CvCameraViewL
         fadeOutAnimation.setAnimationListener(this);
         compareVideo = (ViewGroup) findViewById(R.id.view_compare);
         progress = (ProgressBar) findViewById(R.id.progressBar);
+        calibrationExecutor = new CalibrationExecutor(calibrationListener);
         
     }
 
     @Override
     public void onPause() {
         super.onPause();
+        resumed = false;
         if (oCvCameraView != null)
             oCvCameraView.disableView();
     }
@@ -154,9 +170,13 @@ public class CameraCalibrationActivity extends Activity implements CvCameraViewL
     @SuppressWarnings("deprecation")
     public void onResume() {
         super.onResume();
-        oCvCameraView.enableView();
+        resumed = true;
+        if (pipeline != null) {
+            oCvCameraView.enableView();
+        }
         int cameraId = Integer.parseInt(preferences.getString(CameraPrefActivity.PREF_CAMERA_INDEX, this.getString(R.string.pref_defaultValue_cameraIndex)));
         oCvCameraView.setCameraIndex(cameraId);
+        cameraIndex = cameraId;
         oCvCameraView.setSystemUiVisibility(View.SYSTEM_UI_FLAG_LOW_PROFILE | View.SYSTEM_UI_FLAG_IMMERSIVE | View.SYSTEM_UI_FLAG_FULLSCREEN | View.SYSTEM_UI_FLAG_HIDE_NAVIGATION | View.SYSTEM_UI_FLAG_IMMERSIVE_STICKY);
 
         boolean frontFacing = false;
@@ -180,43 +200,114 @@ public class CameraCalibrationActivity extends Activity implements CvCameraViewL
         else{
             Log.e(TAG, "Not supported Android version.");
         }
+
+        if (calibrator != null) {
+            calibrator.setFieldSize(CameraPrefActivity.getFieldSize(preferences, this));
+        }
+        if (preferences.getBoolean(CameraPrefActivity.PREF_SHOW_FRAME_TIMINGS, false)) {
+            oCvCameraView.enableTimingsOverlay();
+        } else {
+            oCvCameraView.disableTimingsOverlay();
+        }
     }
 
     @Override
     protected void onStop() {
         super.onStop();
 
-        new AsyncTask() {
-            @Override
-            protected Object doInBackground(Object[] params) {
-                return null;
-            }
-        };
-
         if (oCvCameraView != null)
             oCvCameraView.disableView();
     }
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        calibrationExecutor.shutdown();
+        if (calibrationProgress != null) {
+            calibrationProgress.dismiss();
+        }
+        if (pipeline != null) {
+            pipeline.release();
+        }
+    }
+
+    private final AppStartup.Listener openCvListener = new AppStartup.Listener() {
+        @Override
+        public void onReady(String subsystem) {
+            if (isDestroyed()) {
+                return;
+            }
+            Log.i(TAG, "OpenCV loaded successfully");
+            pipeline = new FramePipeline();
+            if (pendingStatisticsResult != null) {
+                applyStatisticsResult(pendingStatisticsResult);
+                pendingStatisticsResult = null;
+            }
+            if (resumed) {
+                oCvCameraView.enableView();
+            }
+        }
+
+        @Override
+        public void onFailed(String subsystem, Throwable cause) {
+            Log.d(TAG, "OpenCV library not found.");
+            finish();
+        }
+    };
+
     public void onCameraViewStarted(int width, int height) {
         oCvCameraView.setSystemUiVisibility(View.SYSTEM_UI_FLAG_LOW_PROFILE | View.SYSTEM_UI_FLAG_IMMERSIVE | View.SYSTEM_UI_FLAG_FULLSCREEN | View.SYSTEM_UI_FLAG_HIDE_NAVIGATION | View.SYSTEM_UI_FLAG_IMMERSIVE_STICKY);
         if (matrixWidth != width || matrixHeight != height) {
             matrixWidth = width;
             matrixHeight = height;
-            calibrator = new CameraCalibrator(matrixWidth, matrixHeight);
+            calibrator = createCalibrator();
             guideButton.setBackgroundResource(R.drawable.hexagon);
 
-            if (CalibrationResult.tryLoad(this, calibrator.getCameraMatrix(), calibrator.getDistortionCoefficients(), matrixWidth, matrixHeight)) {
+            CalibrationResult stored = calibrationStore.find(cameraIndex, matrixWidth, matrixHeight, calibrator.getFlags());
+            if (stored != null) {
+                stored.applyTo(calibrator.getCameraMatrix(), calibrator.getDistortionCoefficients());
                 calibrator.setCalibrated();
                 guideText.setText(R.string.guidingText_Preloaded);
             }
-            renderer = new OnCameraFrameRender(new CalibrationFrameRender(calibrator));
+            int resumedViews = sessionJournal.resume(calibrator);
+            if (resumedViews > 0) {
+                guideText.setText(getResources().getQuantityString(R.plurals.numberOfPicturesTaken,
+                        resumedViews, resumedViews));
+            } else {
+                sessionJournal.start(calibrator);
+            }
+            calibrator.setJournal(sessionJournal);
+            pipeline.setCalibrator(calibrator);
+            pipeline.setMode(FramePipeline.Mode.CALIBRATION);
         }
     }
 
+    private CameraCalibrator createCalibrator() {
+        CameraCalibrator cameraCalibrator = new CameraCalibrator(matrixWidth, matrixHeight);
+        cameraCalibrator.setFieldSize(CameraPrefActivity.getFieldSize(preferences, this));
+        cameraCalibrator.getTracker().setEnabled(true);
+        if (matrixWidth >= PYRAMID_DETECTION_MIN_WIDTH) {
+            cameraCalibrator.setPyramidLevel(1);
+        }
+        return cameraCalibrator;
+    }
+
     public void onCameraViewStopped() {
     }
 
     public Mat onCameraFrame(CvCameraViewFrame inputFrame) {
-        return renderer.render(inputFrame);
+        Mat frame = pipeline.render(inputFrame);
+        if (!firstFrameShown) {
+            firstFrameShown = true;
+            if (startup.getTrace().mark(AppStartup.FIRST_PREVIEW_FRAME)) {
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        reportFullyDrawn();
+                    }
+                });
+            }
+        }
+        return frame;
     }
 
     @Override
@@ -239,12 +330,31 @@ public class CameraCalibrationActivity extends Activity implements CvCameraViewL
             guideModeManagement();
         }
         else {
-            if (renderer.instanceOfFrameRenderer(CalibrationFrameRender.class) && !GUIDE_MODE) {
-                calibrator.addCorners();
-                this.picAddedMessage(calibrator.getCornersBufferSize());
+            if (pipeline != null && pipeline.getMode() == FramePipeline.Mode.CALIBRATION && !GUIDE_MODE) {
+                if (calibrator.addCorners()) {
+                    this.picAddedMessage(calibrator.getCornersBufferSize());
+                } else if (calibrator.patternWasFound()) {
+                    Toast.makeText(this, R.string.text_frameRejected, Toast.LENGTH_SHORT).show();
+                }
             }
         }
     }
+    /**
+     * Dragging over the preview moves the split of the comparison view. In other modes touches
+     * fall through to {@link #onClick(View)}.
+     */
+    @Override
+    public boolean onTouch(View v, MotionEvent event) {
+        if (v != oCvCameraView || pipeline == null || pipeline.getMode() != FramePipeline.Mode.COMPARISON) {
+            return false;
+        }
+        int action = event.getActionMasked();
+        if (action == MotionEvent.ACTION_DOWN || action == MotionEvent.ACTION_MOVE) {
+            pipeline.setComparisonSplit(event.getX() / v.getWidth());
+        }
+        return true;
+    }
+
     @Override
     public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
         Context context = parent.getContext();
@@ -252,23 +362,23 @@ public class CameraCalibrationActivity extends Activity implements CvCameraViewL
         guideText.setVisibility(View.VISIBLE);
         if (position == SETTINGS) {
             context.startActivity(new Intent(context, CameraPrefActivity.class));
-        } else if (position == COMPARE_MENU && isCalibrationAvailable()) {
+        } else if (position == COMPARE_MENU && pipeline != null && isCalibrationAvailable()) {
             guideButton.setVisibility(View.INVISIBLE);
             compareVideo.setVisibility(View.VISIBLE);
-            renderer =
-                    new OnCameraFrameRender(new ComparisonFrameRender(calibrator, matrixWidth, matrixHeight));
+            pipeline.setMode(FramePipeline.Mode.COMPARISON);
             guideText.setVisibility(View.INVISIBLE);
-        } else if (position == UNDISTORETED && isCalibrationAvailable()) {
+        } else if (position == UNDISTORETED && pipeline != null && isCalibrationAvailable()) {
             guideButton.setVisibility(View.INVISIBLE);
-            renderer =
-                    new OnCameraFrameRender(new UndistortionFrameRender(calibrator));
+            pipeline.setMode(FramePipeline.Mode.UNDISTORTION);
             guideText.setText(R.string.undistorted);
-        } else if (position == NEW_CALIBRATION) {
+        } else if (position == NEW_CALIBRATION && pipeline != null) {
             guideButton.setVisibility(View.VISIBLE);
             startGameButton.setVisibility(View.INVISIBLE);
-            calibrator = new CameraCalibrator(matrixWidth, matrixHeight);
-            renderer =
-                    new OnCameraFrameRender(new CalibrationFrameRender(calibrator));
+            calibrator = createCalibrator();
+            sessionJournal.start(calibrator);
+            calibrator.setJournal(sessionJournal);
+            pipeline.setCalibrator(calibrator);
+            pipeline.setMode(FramePipeline.Mode.CALIBRATION);
             guideText.setText(R.string.guidingText_Start);
         } else if (position == SHARE_CALIBRATION) {
             File calibsFile = new File(this.getCacheDir().getAbsolutePath() + "/calibs");
@@ -312,100 +422,139 @@ public class CameraCalibrationActivity extends Activity implements CvCameraViewL
     @Override
     protected void onActivityResult(int requestCode, int resultCode, Intent data) {
         if(requestCode == CALIBRATION_DETAIL_REQ_CODE){
-            if(resultCode == RESULT_OK){
-                CameraCalibrator cameraCalibrator = (CameraCalibrator) data.getSerializableExtra(CameraCalibrationActivity.INTENT_EXTRA_CAMERA_CALIBRATOR);
-                if(cameraCalibrator.getCornersBufferSize() > 1) {
-                    startCalibration(cameraCalibrator);
-                }
+            Intent result = resultCode == RESULT_OK ? data : null;
+            if (result != null && pipeline == null) {
+                // Recreated while the statistics screen was on top, and the OpenCV callback is
+                // still queued. Unparcelling the calibrator creates Mats, so it waits as well.
+                pendingStatisticsResult = result;
+            } else {
+                applyStatisticsResult(result);
             }
         }
     }
+
+    /** @param result the statistics screen result, or null if it was cancelled */
+    private void applyStatisticsResult(Intent result) {
+        CameraCalibrator cameraCalibrator = null;
+        if (result != null) {
+            cameraCalibrator = result.getParcelableExtra(CameraCalibrationActivity.INTENT_EXTRA_CAMERA_CALIBRATOR);
+        }
+        // Both payloads of the round trip have been read for the last time.
+        ParcelPayload.deleteFiles();
+        if(cameraCalibrator != null && cameraCalibrator.getCornersBufferSize() > 1) {
+            // The returned views replace the live ones, so the journal follows now and
+            // later appends continue from the same views.
+            int[] removedViews = result.getIntArrayExtra(INTENT_EXTRA_REMOVED_VIEWS);
+            calibrator = cameraCalibrator;
+            calibrator.setJournal(sessionJournal);
+            if (removedViews != null && removedViews.length > 0) {
+                sessionJournal.compact(calibrator, removedViews);
+            }
+            pipeline.setCalibrator(calibrator);
+            startCalibration(calibrator);
+        }
+    }
     @Override
     public void onPointerCaptureChanged(boolean hasCapture) {
         super.onPointerCaptureChanged(hasCapture);
     }
 
     private void startCalibration(final CameraCalibrator calibrator) {
-        final Resources resources = getResources();
-
-        renderer = new OnCameraFrameRender(new PreviewFrameRender());
-        new AsyncTask<Void, Void, Void>() {
-            private ProgressDialog calibrationProgress;
-
-            @Override
-            protected void onPreExecute() {
-                calibrationProgress = new ProgressDialog(CameraCalibrationActivity.this);
-                calibrationProgress.setTitle(resources.getString(R.string.calibrating));
-                calibrationProgress.setMessage(resources.getString(R.string.please_wait));
-                calibrationProgress.setCancelable(false);
-                calibrationProgress.setIndeterminate(true);
-                calibrationProgress.show();
-            }
-
-            @Override
-            protected Void doInBackground(Void... arg0) {
-                calibrator.calibrate();
-                return null;
-            }
-
-            @SuppressLint("StaticFieldLeak")
+        pipeline.setMode(FramePipeline.Mode.PREVIEW);
+        if (calibrationProgress == null) {
+            calibrationProgress = new ProgressDialog(this);
+            calibrationProgress.setTitle(R.string.calibrating);
+            calibrationProgress.setMessage(getString(R.string.please_wait));
+            calibrationProgress.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+            calibrationProgress.setMax(CameraCalibrator.SOLVE_STAGES);
+            calibrationProgress.setCancelable(true);
+        }
+        calibrationProgress.setOnCancelListener(new DialogInterface.OnCancelListener() {
             @Override
-            protected void onPostExecute(Void calibResult) {
-                calibrationProgress.dismiss();
-                String resultMessage = (calibrator.isCalibrated()) ?
-                        resources.getString(R.string.calibration_successful) + " " + calibrator.getAvgReprojectionError() :
-                        resources.getString(R.string.calibration_unsuccessful);
-                (Toast.makeText(CameraCalibrationActivity.this, resultMessage, Toast.LENGTH_SHORT)).show();
-                
-                if (menuArrayAdapter.getCount() > CALIB_MESSAGE) {
-                    menuArrayAdapter.remove(menuArrayAdapter.getItem(CALIB_MESSAGE));
-                }
-                menuArrayAdapter.insert(resultMessage, CALIB_MESSAGE);
-                menuArrayAdapter.notifyDataSetChanged();
-
-                if (calibrator.isCalibrated()) {
-                    CalibrationResult.save(CameraCalibrationActivity.this,
-                            calibrator.getCameraMatrix(), calibrator.getDistortionCoefficients(), matrixWidth, matrixHeight);
-                    saveCalibration();
-                    startGameButton.setVisibility(View.VISIBLE);
-                    guideText.setText(R.string.text_calibrationFinished);
-                }
-                CameraCalibrationActivity.this.calibrator = calibrator;
+            public void onCancel(DialogInterface dialog) {
+                calibrationExecutor.cancel();
+                pipeline.setMode(FramePipeline.Mode.CALIBRATION);
             }
-        }.execute();
+        });
+        calibrationProgress.setProgress(0);
+        calibrationProgress.show();
+        calibrationExecutor.request(calibrator, true);
     }
 
-    private void saveCalibration() {
-
-        Mat cameraMatrix = calibrator.getCameraMatrix();
-        Mat distortionCoefficients = calibrator.getDistortionCoefficients();
-
-        double[] cameraMatrixArray = new double[CalibrationResult.CAMERA_MATRIX_ROWS * CalibrationResult.CAMERA_MATRIX_COLS];
-        cameraMatrix.get(0, 0, cameraMatrixArray);
+    /**
+     * Refines the intrinsics in the background without reporting the result, used while the
+     * guide keeps capturing.
+     */
+    public void requestCalibration(CameraCalibrator calibrator) {
+        calibrationExecutor.request(calibrator, false);
+    }
 
-        double[] distortionCoefficientsArray = new double[CalibrationResult.DISTORTION_COEFFICIENTS_SIZE];
-        distortionCoefficients.get(0, 0, distortionCoefficientsArray);
+    private final CalibrationExecutor.Listener calibrationListener = new CalibrationExecutor.Listener() {
+        @Override
+        public void onCalibrationProgress(CameraCalibrator calibrator, int stage, int stages) {
+            if (calibrationProgress != null && calibrationProgress.isShowing()) {
+                calibrationProgress.setProgress(stage);
+            }
+        }
 
-        ArrayList<Float> reprojectionErrorArrayList = calibrator.getReprojectionErrorArrayList();
-        float averageRepError = 0;
-        float min = Float.MAX_VALUE;
-        float max = Float.MIN_VALUE;
+        @Override
+        public void onCalibrationPublished(CameraCalibrator calibrator, boolean notify) {
+            if (!notify) {
+                return;
+            }
+            Resources resources = getResources();
+            String resultMessage = (calibrator.isCalibrated()) ?
+                    resources.getString(R.string.calibration_successful) + " " + calibrator.getAvgReprojectionError() :
+                    resources.getString(R.string.calibration_unsuccessful);
+            (Toast.makeText(CameraCalibrationActivity.this, resultMessage, Toast.LENGTH_SHORT)).show();
+
+            if (menuArrayAdapter.getCount() > CALIB_MESSAGE) {
+                menuArrayAdapter.remove(menuArrayAdapter.getItem(CALIB_MESSAGE));
+            }
+            menuArrayAdapter.insert(resultMessage, CALIB_MESSAGE);
+            menuArrayAdapter.notifyDataSetChanged();
+
+            CameraCalibrationActivity.this.calibrator = calibrator;
+            calibrator.setJournal(sessionJournal);
+            pipeline.setCalibrator(calibrator);
+            if (calibrator.isCalibrated()) {
+                CalibrationResult result = CalibrationResult.of(calibrator);
+                calibrationStore.put(cameraIndex, matrixWidth, matrixHeight, calibrator.getFlags(), result);
+                saveCalibration(result);
+                startGameButton.setVisibility(View.VISIBLE);
+                guideText.setText(R.string.text_calibrationFinished);
+            }
+        }
 
-        for (int i = 0; i <= reprojectionErrorArrayList.size() -1; i++) {
-            averageRepError +=(float) reprojectionErrorArrayList.get(i);
-            if(reprojectionErrorArrayList.get(i) < min){
-                min = reprojectionErrorArrayList.get(i);
+        @Override
+        public void onCalibrationFailed(CameraCalibrator calibrator, boolean notify) {
+            if (notify) {
+                (Toast.makeText(CameraCalibrationActivity.this, R.string.calibration_unsuccessful, Toast.LENGTH_SHORT)).show();
             }
-            if(reprojectionErrorArrayList.get(i) > max){
-                max = reprojectionErrorArrayList.get(i);
+        }
+
+        @Override
+        public void onCalibrationIdle() {
+            if (calibrationProgress != null && calibrationProgress.isShowing()) {
+                calibrationProgress.dismiss();
             }
         }
-        averageRepError /= reprojectionErrorArrayList.size();
+    };
 
-        CameraCalibrationActivity.nativeSaveParam(cameraMatrixArray, distortionCoefficientsArray, matrixWidth, matrixHeight,averageRepError, min, max);
+    private void saveCalibration(CalibrationResult result) {
+        if (!startup.await(AppStartup.UPLOAD_NATIVE)) {
+            Log.e(TAG, "Calibration not saved, the native uploader is not available");
+            return;
+        }
+        CameraCalibrationActivity.nativeSaveParam(result.cameraMatrix, result.distortionCoefficients,
+                matrixWidth, matrixHeight, result.meanViewError, result.minViewError, result.maxViewError);
     }
 
     private void guideModeManagement() {
+        if (pipeline == null) {
+            // The guide draws through the pipeline, which waits for OpenCV.
+            return;
+        }
         calibrator.clearCorners();
         if (!GUIDE_MODE) {
             GUIDE_MODE = true;
@@ -414,7 +563,7 @@ public class CameraCalibrationActivity extends Activity implements CvCameraViewL
 
             GuideMode guide = new GuideMode(matrixWidth, matrixHeight, this);
             guide.registerCalibrationGuideListener(this);
-            renderer.setCalibrationGuide(guide);
+            pipeline.setCalibrationGuide(guide);
             guideButton.setBackgroundResource(R.drawable.hexagon_gray);
         } else {
             GUIDE_MODE = false;
@@ -422,7 +571,7 @@ public class CameraCalibrationActivity extends Activity implements CvCameraViewL
             final String picsTaken = getResources().getQuantityString(R.plurals.numberOfPicturesTaken,
                     calibrator.getCornersBufferSize(), calibrator.getCornersBufferSize());
             guideText.setText(picsTaken);
-            renderer.setCalibrationGuide(null);
+            pipeline.setCalibrationGuide(null);
             guideButton.setBackgroundResource(R.drawable.hexagon);
         }
     }
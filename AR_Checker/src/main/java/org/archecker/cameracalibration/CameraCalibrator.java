@@ -1,38 +1,65 @@
 package org.archecker.cameracalibration;
-import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.List;
-import org.archecker.imageprocessing.ChessboardProcessing;
+import org.archecker.imageprocessing.BoardRectifier;
+import org.archecker.imageprocessing.MatPool;
 import org.opencv.calib3d.Calib3d;
 import org.opencv.core.Core;
 import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfDouble;
 import org.opencv.core.MatOfPoint2f;
-import org.opencv.core.MatOfPoint3f;
 import org.opencv.core.Point;
+import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
 import org.opencv.core.Size;
 import org.opencv.imgproc.Imgproc;
 
+import android.os.BadParcelableException;
+import android.os.Parcel;
+import android.os.Parcelable;
 import android.util.Log;
 
-public class CameraCalibrator implements Serializable{
+public class CameraCalibrator implements Parcelable {
     private static final String TAG = "CameraCalibrator";
-    private final Size patternSize = new Size(7, 7);
-    private final int cornersSize = (int)(patternSize.width * patternSize.height);
+    private static final int PARCEL_MAGIC = 0x43414C42;
+    private static final int PARCEL_VERSION = 1;
+    static final int SOLVE_STAGE_CALIBRATE = 1;
+    static final int SOLVE_STAGE_ERRORS = 2;
+    static final int SOLVE_STAGE_PUBLISH = 3;
+    static final int SOLVE_STAGES = 3;
+    private volatile BoardModel board = BoardModel.get(new Size(7, 7), 0.0181, BoardModel.Layout.ASYMMETRIC);
     private boolean patternWasFound = false;
     private MatOfPoint2f corners = new MatOfPoint2f();
-    private List<Mat> cornersBuffer = new ArrayList<>();
+    private CornerStore cornersBuffer = new CornerStore(board.getCornerCount());
     private boolean isCalibrated = false;
     private Mat cameraMatrix = new Mat();
     private Mat distortionCoefficients = new Mat();
     private int flags;
     private double rms;
-    private double fieldSize = 0.0181;
     private Size imageSize;
-    private ArrayList<Mat> objectPoints = new ArrayList<>();
     private Mat reprojectionErrors;
+    private ReprojectionErrors reprojectionStatistics;
+    private volatile int calibrationVersion;
+    private PyramidChessboardDetector detector;
+    private RoiPatternTracker tracker;
+    private BoardRectifier boardRectifier;
+    private PoseCoverageIndex coverageIndex;
+    private ViewJournal journal;
+
+    /**
+     * Receives the captured views as they change, e.g. to persist the session. Kept free of
+     * Android types so the calibrator also builds on a desktop JVM.
+     */
+    interface ViewJournal {
+        /** A new session holding the views the calibrator has now. */
+        void start(CameraCalibrator calibrator);
+
+        /** One captured view, as interleaved (x, y) pairs. */
+        void append(float[] corners);
+    }
 
     public CameraCalibrator(int width, int height) {
         imageSize = new Size(width, height);
@@ -48,104 +75,414 @@ public class CameraCalibrator implements Serializable{
         reprojectionErrors = new Mat();
     }
 
+    /**
+     * Restores the state written by {@link #writeToParcel(Parcel, int)}. Detector, tracker and
+     * coverage index start fresh, as they do after construction.
+     */
+    private CameraCalibrator(ByteBuffer in) {
+        if (in.getInt() != PARCEL_MAGIC || in.getInt() != PARCEL_VERSION) {
+            throw new BadParcelableException("Unsupported calibrator payload");
+        }
+        imageSize = new Size(in.getInt(), in.getInt());
+        flags = in.getInt();
+        isCalibrated = in.getInt() != 0;
+        rms = in.getDouble();
+        Size patternSize = new Size(in.getInt(), in.getInt());
+        BoardModel.Layout layout = BoardModel.Layout.values()[in.getInt()];
+        board = BoardModel.get(patternSize, in.getDouble(), layout);
+
+        double[] intrinsics = new double[9];
+        for (int i = 0; i < intrinsics.length; i++) {
+            intrinsics[i] = in.getDouble();
+        }
+        cameraMatrix.create(3, 3, CvType.CV_64FC1);
+        cameraMatrix.put(0, 0, intrinsics);
+        double[] distortion = new double[in.getInt()];
+        for (int i = 0; i < distortion.length; i++) {
+            distortion[i] = in.getDouble();
+        }
+        distortionCoefficients.create(distortion.length, 1, CvType.CV_64FC1);
+        distortionCoefficients.put(0, 0, distortion);
+
+        cornersBuffer = CornerStore.readFrom(in);
+        if (cornersBuffer.getCornersPerView() != board.getCornerCount()) {
+            throw new BadParcelableException("Payload holds " + cornersBuffer.getCornersPerView()
+                    + " corners per view, expected " + board.getCornerCount());
+        }
+
+        reprojectionErrors = new Mat();
+        if (in.get() != 0) {
+            reprojectionStatistics = ReprojectionErrors.readFrom(in);
+            reprojectionErrors.create(reprojectionStatistics.getViewCount(), 1, CvType.CV_32FC1);
+            reprojectionErrors.put(0, 0, reprojectionStatistics.getViewErrors());
+        }
+    }
+
+    public static final Creator<CameraCalibrator> CREATOR = new Creator<CameraCalibrator>() {
+        @Override
+        public CameraCalibrator createFromParcel(Parcel source) {
+            return new CameraCalibrator(ParcelPayload.read(source));
+        }
+
+        @Override
+        public CameraCalibrator[] newArray(int size) {
+            return new CameraCalibrator[size];
+        }
+    };
+
+    @Override
+    public int describeContents() {
+        return 0;
+    }
+
+    /**
+     * Writes intrinsics, distortion, the captured corners and the re-projection errors as one
+     * binary block. Payloads too large for the Binder travel through a file, see {@link ParcelPayload}.
+     */
+    @Override
+    public void writeToParcel(Parcel dest, int parcelFlags) {
+        ByteBuffer payload;
+        synchronized (this) {
+            payload = encode();
+        }
+        ParcelPayload.write(dest, payload);
+    }
+
+    private ByteBuffer encode() {
+        double[] intrinsics = new double[9];
+        cameraMatrix.get(0, 0, intrinsics);
+        double[] distortion = new double[(int) distortionCoefficients.total()];
+        distortionCoefficients.get(0, 0, distortion);
+
+        int bytes = 9 * 4 + 2 * 8
+                + (intrinsics.length + distortion.length) * 8 + 4
+                + cornersBuffer.encodedBytes()
+                + 1 + (reprojectionStatistics != null ? reprojectionStatistics.encodedBytes() : 0);
+        ByteBuffer out = ByteBuffer.allocate(bytes).order(ByteOrder.nativeOrder());
+        out.putInt(PARCEL_MAGIC);
+        out.putInt(PARCEL_VERSION);
+        out.putInt((int) imageSize.width);
+        out.putInt((int) imageSize.height);
+        out.putInt(flags);
+        out.putInt(isCalibrated ? 1 : 0);
+        out.putDouble(rms);
+        Size patternSize = board.getPatternSize();
+        out.putInt((int) patternSize.width);
+        out.putInt((int) patternSize.height);
+        out.putInt(board.getLayout().ordinal());
+        out.putDouble(board.getFieldSize());
+        for (double value : intrinsics) {
+            out.putDouble(value);
+        }
+        out.putInt(distortion.length);
+        for (double value : distortion) {
+            out.putDouble(value);
+        }
+        cornersBuffer.writeTo(out);
+        out.put((byte) (reprojectionStatistics != null ? 1 : 0));
+        if (reprojectionStatistics != null) {
+            reprojectionStatistics.writeTo(out);
+        }
+        out.flip();
+        return out;
+    }
+
 
     public void processFrame(Mat grayFrame, Mat rgbaFrame) {
         findPattern(grayFrame);
         renderFrame(rgbaFrame);
     }
 
+    /**
+     * Solves and publishes on the calling thread. Prefer {@link CalibrationExecutor}, which keeps
+     * solves off the camera and UI threads and coalesces requests.
+     */
     public void calibrate() {
+        publish(solve(null));
+    }
+
+    /**
+     * Runs calibrateCamera on a snapshot of the captured views. The published intrinsics are not
+     * touched, so renderers keep using them until {@link #publish(Solution)}.
+     * @return the solution, or null if the monitor cancelled the solve
+     */
+    Solution solve(SolveMonitor monitor) {
+        // The image point headers point into the snapshot's direct buffer without referencing
+        // it, so the snapshot goes into the solution to stay reachable until the solve is done.
+        CornerStore views;
+        BoardModel model;
+        Mat intrinsics = new Mat();
+        synchronized (this) {
+            views = cornersBuffer.snapshot();
+            model = board;
+            // CALIB_FIX_ASPECT_RATIO keeps the fx/fy ratio of the matrix passed in.
+            cameraMatrix.copyTo(intrinsics);
+        }
+        List<Mat> imagePoints = views.views();
+        List<Mat> objectPoints = model.getObjectPoints(imagePoints.size());
+        if (isCancelled(monitor, SOLVE_STAGE_CALIBRATE)) {
+            return null;
+        }
+
+        Mat distortion = new Mat();
         ArrayList<Mat> rvecs = new ArrayList<>();
         ArrayList<Mat> tvecs = new ArrayList<>();
-
-        ArrayList<Mat> objectPoints = new ArrayList<>();
-        objectPoints.add(Mat.zeros(cornersSize, 1, CvType.CV_32FC3));
-        calcBoardCornerPositions(objectPoints.get(0));
-        for (int i = 1; i < cornersBuffer.size(); i++) {
-            objectPoints.add(objectPoints.get(0));
+        Calib3d.calibrateCamera(objectPoints, imagePoints, imageSize,
+                intrinsics, distortion, rvecs, tvecs, flags);
+        if (isCancelled(monitor, SOLVE_STAGE_ERRORS)) {
+            return null;
         }
 
-        Calib3d.calibrateCamera(objectPoints, cornersBuffer, imageSize,
-                cameraMatrix, distortionCoefficients, rvecs, tvecs, flags);
+        boolean valid = Core.checkRange(intrinsics) && Core.checkRange(distortion);
+        ReprojectionErrors errors = ReprojectionErrors.compute(objectPoints.get(0), imagePoints,
+                rvecs, tvecs, intrinsics, distortion);
+        if (isCancelled(monitor, SOLVE_STAGE_PUBLISH)) {
+            return null;
+        }
+        return new Solution(intrinsics, distortion, errors, valid, views);
+    }
 
-        isCalibrated = Core.checkRange(cameraMatrix)
-                && Core.checkRange(distortionCoefficients);
+    private static boolean isCancelled(SolveMonitor monitor, int stage) {
+        if (monitor == null) {
+            return false;
+        }
+        monitor.onStage(stage, SOLVE_STAGES);
+        return monitor.isCancelled();
+    }
 
-        rms = computeReprojectionErrors(objectPoints, rvecs, tvecs, reprojectionErrors);
+    /**
+     * Swaps in a solution in one step. The intrinsics Mats keep their identity, so callers
+     * holding {@link #getCameraMatrix()} see the new values.
+     */
+    synchronized void publish(Solution solution) {
+        solution.cameraMatrix.copyTo(cameraMatrix);
+        solution.distortionCoefficients.copyTo(distortionCoefficients);
+        reprojectionStatistics = solution.errors;
+        reprojectionErrors.create(solution.errors.getViewCount(), 1, CvType.CV_32FC1);
+        reprojectionErrors.put(0, 0, solution.errors.getViewErrors());
+        rms = solution.errors.getRms();
+        isCalibrated = solution.valid;
+        calibrationVersion++;
+        // Bins use the intrinsics, rebuild them with the new ones so views are binned alike.
+        dropCoverageIndex();
         Log.i(TAG, String.format("Average re-projection error: %f", rms));
         Log.i(TAG, "Camera matrix: " + cameraMatrix.dump());
         Log.i(TAG, "Distortion coefficients: " + distortionCoefficients.dump());
-        this.objectPoints = objectPoints;
     }
 
-    public void clearCorners() {
+    /**
+     * Incremented on every published calibration, lets consumers drop state derived from the
+     * intrinsics.
+     */
+    public int getCalibrationVersion() {
+        return calibrationVersion;
+    }
+
+    public synchronized void clearCorners() {
         cornersBuffer.clear();
+        getCoverageIndex().clear();
+        if (journal != null) {
+            journal.start(this);
+        }
     }
 
-    private void calcBoardCornerPositions(Mat corners) {
-        final int cn = 3;
-        float positions[] = new float[cornersSize * cn];
+    private void findPattern(Mat grayFrame) {
+        boolean found = detectPattern(grayFrame, corners);
+        synchronized (this) {
+            patternWasFound = found;
+        }
+    }
 
-        for (int i = 0; i < patternSize.height; i++) {
-            for (int j = 0; j < patternSize.width * cn; j += cn) {
-                positions[(int) (i * patternSize.width * cn + j + 0)] =
-                        (2 * (j / cn) + i % 2) * (float) fieldSize;
-                positions[(int) (i * patternSize.width * cn + j + 1)] =
-                        i * (float) fieldSize;
-                positions[(int) (i * patternSize.width * cn + j + 2)] = 0;
+    /**
+     * Runs the chessboard search without touching the calibrator state, so it can be called
+     * from a detection thread while the preview keeps drawing the last published result.
+     */
+    boolean detectPattern(Mat grayFrame, MatOfPoint2f cornersOut) {
+        RoiPatternTracker patternTracker = getTracker();
+        Rect roi = patternTracker.searchRegion(grayFrame.cols(), grayFrame.rows());
+        Size patternSize = board.getPatternSize();
+        boolean found;
+        if (roi != null) {
+            Mat region = grayFrame.submat(roi);
+            found = getDetector().find(region, patternSize, cornersOut, Calib3d.CALIB_CB_ASYMMETRIC_GRID);
+            region.release();
+            if (found) {
+                Core.add(cornersOut, new Scalar(roi.x, roi.y), cornersOut);
             }
+        } else {
+            found = getDetector().find(grayFrame, patternSize, cornersOut, Calib3d.CALIB_CB_ASYMMETRIC_GRID);
         }
-        corners.create(cornersSize, 1, CvType.CV_32FC3);
-        corners.put(0, 0, positions);
+        patternTracker.update(roi != null, found, cornersOut);
+        return found;
     }
 
-    private double computeReprojectionErrors(List<Mat> objectPoints,
-                                             List<Mat> rvecs, List<Mat> tvecs, Mat perViewErrors) {
-        MatOfPoint2f cornersProjected = new MatOfPoint2f();
-        double totalError = 0;
-        double error;
-        float viewErrors[] = new float[objectPoints.size()];
-
-        MatOfDouble distortionCoefficients = new MatOfDouble(this.distortionCoefficients);
-        int totalPoints = 0;
-        for (int i = 0; i < objectPoints.size(); i++) {
-            MatOfPoint3f points = new MatOfPoint3f(objectPoints.get(i));
-            Calib3d.projectPoints(points, rvecs.get(i), tvecs.get(i),
-                    cameraMatrix, distortionCoefficients, cornersProjected);
-            error = Core.norm(cornersBuffer.get(i), cornersProjected, Core.NORM_L2);
+    /**
+     * Tracker restricting the search to the neighbourhood of the last detected board.
+     * Exposes the hit/miss counters used to tune it.
+     */
+    public synchronized RoiPatternTracker getTracker() {
+        if (tracker == null) {
+            tracker = new RoiPatternTracker();
+        }
+        return tracker;
+    }
 
-            int n = objectPoints.get(i).rows();
-            viewErrors[i] = (float) Math.sqrt(error * error / n);
-            totalError  += error * error;
-            totalPoints += n;
+    private synchronized PyramidChessboardDetector getDetector() {
+        if (detector == null) {
+            detector = new PyramidChessboardDetector();
         }
-        perViewErrors.create(objectPoints.size(), 1, CvType.CV_32FC1);
-        perViewErrors.put(0, 0, viewErrors);
+        return detector;
+    }
 
-        return Math.sqrt(totalError / totalPoints);
+    /**
+     * Searches for the board on the given pyramid level and refines the corners on the
+     * full-resolution frame. Level 0 searches the full-resolution frame only.
+     */
+    public void setPyramidLevel(int level) {
+        getDetector().setPyramidLevel(level);
     }
 
-    private void findPattern(Mat grayFrame) {
-        patternWasFound = Calib3d.findChessboardCorners(grayFrame, patternSize,
-                corners, Calib3d.CALIB_CB_ASYMMETRIC_GRID);
-        if(patternWasFound) {
-            Log.i(TAG, "Corners: " + corners.toArray());
-            ChessboardProcessing.straightenImage(grayFrame);
-            ChessboardProcessing.cropCheckerFields(grayFrame);
+    public void setRefinementWindow(int halfSize) {
+        getDetector().setRefinementWindow(halfSize);
+    }
+
+    synchronized void publishPattern(boolean found, MatOfPoint2f detectedCorners) {
+        patternWasFound = found;
+        if (found) {
+            detectedCorners.copyTo(corners);
         }
     }
 
-    public void addCorners() {
+    /**
+     * Rectifier over the last detected board, brought up to date when asked for. Nothing in the
+     * app calls {@link BoardRectifier#rectify(Mat, Mat)} yet, so detection doesn't feed it.
+     */
+    public synchronized BoardRectifier getBoardRectifier() {
+        if (boardRectifier == null) {
+            boardRectifier = new BoardRectifier(board.getPatternSize());
+        }
         if (patternWasFound) {
-            cornersBuffer.add(corners.clone());
+            boardRectifier.update(corners);
         }
+        return boardRectifier;
+    }
+
+    synchronized boolean copyPattern(MatOfPoint2f cornersOut) {
+        corners.copyTo(cornersOut);
+        return patternWasFound;
+    }
+
+    /**
+     * Captures the last detected corners unless a view with the same image position and pose
+     * bins is already held.
+     * @return true if the view was added
+     */
+    public synchronized boolean addCorners() {
+        if (!patternWasFound) {
+            return false;
+        }
+        PoseCoverageIndex index = getCoverageIndex();
+        int key = index.classify(corners, board.getObjectPoints(), isCalibrated ? cameraMatrix : null);
+        if (index.isRedundant(key)) {
+            Log.i(TAG, "Rejected redundant view. " + index);
+            return false;
+        }
+        int view = cornersBuffer.add(corners);
+        index.add(key);
+        if (journal != null) {
+            float[] journaled = new float[cornersBuffer.getCornersPerView() * 2];
+            cornersBuffer.get(view, journaled);
+            journal.append(journaled);
+        }
+        return true;
+    }
+
+    /**
+     * Journals every view captured from now on, and restarts the journal when the views are
+     * cleared. The journal is not parcelled.
+     */
+    synchronized void setJournal(ViewJournal journal) {
+        this.journal = journal;
+    }
+
+    /** Replaces the captured views by views read back from a {@link ViewJournal}. */
+    synchronized void restoreViews(CornerStore views) {
+        if (views.getCornersPerView() != board.getCornerCount()) {
+            throw new IllegalArgumentException("Views hold " + views.getCornersPerView()
+                    + " corners, the board has " + board.getCornerCount());
+        }
+        cornersBuffer = views;
+        dropCoverageIndex();
+    }
+
+    synchronized CornerStore snapshotViews() {
+        return cornersBuffer.snapshot();
+    }
+
+    public synchronized PoseCoverageIndex getCoverageIndex() {
+        if (coverageIndex == null) {
+            coverageIndex = new PoseCoverageIndex((int) imageSize.width, (int) imageSize.height);
+            // Views restored from a serialized calibrator, or binned again after a calibration,
+            // are indexed as they are, redundant or not.
+            MatOfPoint2f view = new MatOfPoint2f();
+            for (int i = 0; i < cornersBuffer.size(); i++) {
+                cornersBuffer.view(i).copyTo(view);
+                coverageIndex.add(coverageIndex.classify(view, board.getObjectPoints(),
+                        isCalibrated ? cameraMatrix : null));
+            }
+            view.release();
+        }
+        return coverageIndex;
+    }
+
+    private void dropCoverageIndex() {
+        if (coverageIndex != null) {
+            coverageIndex.release();
+            coverageIndex = null;
+        }
+    }
+
+    /**
+     * Switches to another board. A different pattern size drops the captured views; a different
+     * field size or layout only changes the object points used by the next calibration.
+     */
+    public synchronized void setBoard(Size patternSize, double fieldSize, BoardModel.Layout layout) {
+        BoardModel model = BoardModel.get(patternSize, fieldSize, layout);
+        if (model == board) {
+            return;
+        }
+        if (!model.getPatternSize().equals(board.getPatternSize())) {
+            cornersBuffer = new CornerStore(model.getCornerCount());
+            patternWasFound = false;
+            corners = new MatOfPoint2f();
+            if (boardRectifier != null) {
+                boardRectifier.release();
+                boardRectifier = null;
+            }
+        }
+        // Pose bins depend on the object points, the index is rebuilt on next use.
+        dropCoverageIndex();
+        board = model;
+        if (journal != null) {
+            journal.start(this);
+        }
+        Log.i(TAG, "Board " + patternSize + ", field size " + fieldSize + " m, " + layout);
+    }
+
+    public void setFieldSize(double fieldSize) {
+        BoardModel model = board;
+        setBoard(model.getPatternSize(), fieldSize, model.getLayout());
+    }
+
+    public BoardModel getBoard() {
+        return board;
     }
 
     private void drawPoints(Mat rgbaFrame) {
-        Calib3d.drawChessboardCorners(rgbaFrame, patternSize, corners, patternWasFound);
+        Calib3d.drawChessboardCorners(rgbaFrame, board.getPatternSize(), corners, patternWasFound);
     }
 
-    private void renderFrame(Mat rgbaFrame) {
+    synchronized void renderFrame(Mat rgbaFrame) {
         drawPoints(rgbaFrame);
         Imgproc.putText(rgbaFrame, "Captured: " + cornersBuffer.size(), new Point(rgbaFrame.cols() / 3 * 2, rgbaFrame.rows() * 0.1),
                 Core.FONT_HERSHEY_SIMPLEX, 1.0, new Scalar(255, 255, 0));
@@ -167,53 +504,69 @@ public class CameraCalibrator implements Serializable{
         return rms;
     }
 
+    public Size getImageSize() {
+        return imageSize.clone();
+    }
+
+    /** The calibrateCamera flags, which select the calibration model. */
+    public int getFlags() {
+        return flags;
+    }
+
     public boolean isCalibrated() {
         return isCalibrated;
     }
 
-    public void setCalibrated() {
+    public synchronized void setCalibrated() {
         isCalibrated = true;
+        // Intrinsics loaded from storage are written straight into the Mats.
+        calibrationVersion++;
     }
 
-    public boolean checkLastFrame()
+    /**
+     * Copies the published intrinsics in one step.
+     * @return the calibration version the copies belong to
+     */
+    public synchronized int copyIntrinsics(Mat cameraMatrixOut, Mat distortionOut) {
+        cameraMatrix.copyTo(cameraMatrixOut);
+        distortionCoefficients.copyTo(distortionOut);
+        return calibrationVersion;
+    }
+
+    public synchronized boolean checkLastFrame()
     {
         boolean isFrameBad = false;
 
         if(cornersBuffer.size() > 0) {
-
-            Mat tmpCamMatrix = new Mat();
             double badAngleThresh = 40;
 
-            if (cameraMatrix.total() > 0) {
-                tmpCamMatrix = Mat.eye(3, 3, CvType.CV_64F);
-                tmpCamMatrix.put(0, 0, 20000);
-                tmpCamMatrix.put(1, 1, 20000);
-                tmpCamMatrix.put(0, 2, imageSize.height / 2);
-                tmpCamMatrix.put(1, 2, imageSize.width / 2);
-            } else {
-                cameraMatrix.copyTo(tmpCamMatrix);
-            }
-
-            Mat r, t, angles;
-            r = new Mat();
-            t = new Mat();
-            angles = new MatOfPoint2f();
-
-            MatOfPoint3f previousObjectPoints = new MatOfPoint3f(objectPoints.get(objectPoints.size() -1));
-
-            MatOfPoint2f currentPoints = new MatOfPoint2f(corners);
-
-            MatOfDouble distortionCoefficients = new MatOfDouble(this.distortionCoefficients);
-
-            Calib3d.solvePnP(previousObjectPoints, currentPoints, tmpCamMatrix, distortionCoefficients, r, t);
-            angles = CameraRotationHandler.rodriguesToEuler(r, CameraRotationHandler.CALIB_DEGREES);
+            try (MatPool.Scope scope = MatPool.getDefault().open()) {
+                Mat tmpCamMatrix = scope.acquire(3, 3, CvType.CV_64F);
+                if (cameraMatrix.total() > 0) {
+                    tmpCamMatrix.put(0, 0,
+                            20000, 0, imageSize.height / 2,
+                            0, 20000, imageSize.width / 2,
+                            0, 0, 1);
+                } else {
+                    cameraMatrix.copyTo(tmpCamMatrix);
+                }
 
-            if (angles != null) {
-                if (Math.abs(angles.get(0, 0)[0]) > badAngleThresh || Math.abs(angles.get(1, 0)[0]) > badAngleThresh) {
-                    isFrameBad = true;
+                Mat r = scope.acquire(3, 1, CvType.CV_64F);
+                Mat t = scope.acquire(3, 1, CvType.CV_64F);
+                MatOfDouble distortionCoefficients = new MatOfDouble(this.distortionCoefficients);
+
+                Calib3d.solvePnP(board.getObjectPoints(), corners, tmpCamMatrix, distortionCoefficients, r, t);
+                distortionCoefficients.release();
+                Mat angles = CameraRotationHandler.rodriguesToEuler(r, CameraRotationHandler.CALIB_DEGREES);
+
+                if (angles != null) {
+                    if (Math.abs(angles.get(0, 0)[0]) > badAngleThresh || Math.abs(angles.get(1, 0)[0]) > badAngleThresh) {
+                        isFrameBad = true;
+                    }
+                    angles.release();
+                } else {
+                    Log.e(TAG, "Frame evaluation failed");
                 }
-            } else {
-                Log.e(TAG, "Frame evaluation failed");
             }
         }
         return isFrameBad;
@@ -223,12 +576,40 @@ public class CameraCalibrator implements Serializable{
         return reprojectionErrors;
     }
 
-    public void removeFrame(Mat itemToRemove) {
-        cornersBuffer.remove(itemToRemove);
+    /**
+     * Per-view, per-corner and aggregate errors of the last calibration, or null before the first one.
+     */
+    public ReprojectionErrors getReprojectionStatistics() {
+        return reprojectionStatistics;
+    }
+
+    /**
+     * Removes a captured view. The last view takes its index, so several views have to be
+     * removed in descending index order. The re-projection errors follow the views; if they
+     * don't cover exactly the captured views they are dropped until the next solve.
+     */
+    public synchronized void removeFrame(int viewIndex) {
+        PoseCoverageIndex index = getCoverageIndex();
+        int views = cornersBuffer.size();
+        cornersBuffer.remove(viewIndex);
+        index.remove(viewIndex);
+        if (reprojectionStatistics != null && reprojectionStatistics.getViewCount() == views) {
+            reprojectionStatistics = reprojectionStatistics.withoutView(viewIndex);
+            reprojectionErrors.create(reprojectionStatistics.getViewCount(), 1, CvType.CV_32FC1);
+            reprojectionErrors.put(0, 0, reprojectionStatistics.getViewErrors());
+        } else {
+            reprojectionStatistics = null;
+            reprojectionErrors.release();
+            reprojectionErrors = new Mat();
+        }
     }
 
-    public Mat getFrame(int index) {
-        return cornersBuffer.get(index);
+    /**
+     * A copy of the stored corners of a view. The store's memory is replaced when it grows or
+     * views are restored, so a header over it would not stay valid.
+     */
+    public synchronized Mat getFrame(int index) {
+        return cornersBuffer.view(index).clone();
     }
 
     public boolean patternWasFound() {return patternWasFound;}
@@ -237,12 +618,39 @@ public class CameraCalibrator implements Serializable{
         return corners;
     }
 
-    public ArrayList<Float> getReprojectionErrorArrayList(){
+    /** The error of every view the last solve covered, in view index order. */
+    public synchronized ArrayList<Float> getReprojectionErrorArrayList(){
         ArrayList<Float> reprojectionArray = new ArrayList<>();
 
-        for(int i = 0; i <= this.getCornersBufferSize()-1;i++){
+        int views = Math.min(this.getCornersBufferSize(), reprojectionErrors.rows());
+        for(int i = 0; i < views;i++){
             reprojectionArray.add((float) reprojectionErrors.get(i,0)[0]);
         }
         return reprojectionArray;
     }
-}
\ No newline at end of file
+
+    /** Checked between the stages of a solve. */
+    interface SolveMonitor {
+        void onStage(int stage, int stages);
+
+        boolean isCancelled();
+    }
+
+    static final class Solution {
+        final Mat cameraMatrix;
+        final Mat distortionCoefficients;
+        final ReprojectionErrors errors;
+        final boolean valid;
+        /** The views solved over, which own the memory of the image points. */
+        final CornerStore views;
+
+        Solution(Mat cameraMatrix, Mat distortionCoefficients, ReprojectionErrors errors, boolean valid,
+                 CornerStore views) {
+            this.cameraMatrix = cameraMatrix;
+            this.distortionCoefficients = distortionCoefficients;
+            this.errors = errors;
+            this.valid = valid;
+            this.views = views;
+        }
+    }
+}
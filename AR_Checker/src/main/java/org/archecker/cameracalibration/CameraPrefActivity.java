@@ -1,6 +1,7 @@
 package org.archecker.cameracalibration;
 
 import android.annotation.TargetApi;
+import android.content.Context;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.hardware.Camera;
@@ -8,16 +9,22 @@ import android.os.Build;
 import android.os.Bundle;
 import android.preference.EditTextPreference;
 import android.preference.ListPreference;
+import android.preference.Preference;
 import android.preference.PreferenceActivity;
 import android.util.Log;
+import android.widget.Toast;
 
 import org.archecker.R;
+import org.opencv.android.FrameTimings;
 
 import java.util.List;
 
 public class CameraPrefActivity extends PreferenceActivity implements
         SharedPreferences.OnSharedPreferenceChangeListener {
     private static final String TAG = "CameraPrefActivity";
+    // Field size of the printed calibration board, the sheet is scaled to the paper width.
+    private static final double FIELD_SIZE_A4 = 0.0181;
+    private static final double FIELD_SIZE_US_LETTER = FIELD_SIZE_A4 * 215.9 / 210.0;
     private static final PixelSizeToAspectRatio aspectRatios[] = new PixelSizeToAspectRatio[]{
             new PixelSizeToAspectRatio(1, 1, ASPECT_RATIO._1_1, "1:1"),
             new PixelSizeToAspectRatio(11, 9, ASPECT_RATIO._11_9, "11:9"),
@@ -41,6 +48,8 @@ public class CameraPrefActivity extends PreferenceActivity implements
     public static final String PREF_CAMERA_INDEX = "pref_cameraIndex";
     public static final String PREF_CAMERA_RESOLUTION = "pref_cameraResolution";
     public static final String PREF_PAPER_SIZE = "pref_paperSize";
+    public static final String PREF_SHOW_FRAME_TIMINGS = "pref_showFrameTimings";
+    public static final String PREF_DUMP_FRAME_TIMINGS = "pref_dumpFrameTimings";
     private ListPreference cameraIndexPreference;
     private ListPreference cameraResolutionPreference;
     private ListPreference paperSizePreference;
@@ -61,6 +70,16 @@ public class CameraPrefActivity extends PreferenceActivity implements
         cameraIndexPreference = (ListPreference) findPreference(PREF_CAMERA_INDEX);
         cameraResolutionPreference = (ListPreference) findPreference(PREF_CAMERA_RESOLUTION);
         paperSizePreference = (ListPreference) findPreference(PREF_PAPER_SIZE);
+        findPreference(PREF_DUMP_FRAME_TIMINGS).setOnPreferenceClickListener(new Preference.OnPreferenceClickListener() {
+            @Override
+            public boolean onPreferenceClick(Preference preference) {
+                FrameTimings.log();
+                // The next dump covers the frames from now on.
+                FrameTimings.reset();
+                Toast.makeText(CameraPrefActivity.this, R.string.text_frameTimingsDumped, Toast.LENGTH_SHORT).show();
+                return true;
+            }
+        });
 
         int cameraCount;
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.GINGERBREAD) {
@@ -143,6 +162,7 @@ public class CameraPrefActivity extends PreferenceActivity implements
 
         cameraIndexPreference.setSummary(cameraIndexPreference.getEntry());
         cameraResolutionPreference.setSummary(cameraResolutionPreference.getEntry());
+        paperSizePreference.setSummary(paperSizePreference.getEntry());
 
         getPreferenceManager().getSharedPreferences()
                 .registerOnSharedPreferenceChangeListener(this);
@@ -174,6 +194,17 @@ public class CameraPrefActivity extends PreferenceActivity implements
     }
 
 
+    /**
+     * Field size in metres of the board printed on the paper size chosen in the preferences.
+     */
+    public static double getFieldSize(SharedPreferences preferences, Context context) {
+        String paperSize = preferences.getString(PREF_PAPER_SIZE, context.getString(R.string.pref_defaultValue_paperSize));
+        if ("US Letter".equals(paperSize)) {
+            return FIELD_SIZE_US_LETTER;
+        }
+        return FIELD_SIZE_A4;
+    }
+
     private String findAspectRatioName(int w, int h) {
 
         int primes[] = {2, 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43,
@@ -1,5 +1,6 @@
 package org.archecker.cameracalibration;
 
+import org.archecker.imageprocessing.MatPool;
 import org.opencv.calib3d.Calib3d;
 import org.opencv.core.Core;
 import org.opencv.core.CvException;
@@ -107,9 +108,11 @@ public abstract class CameraRotationHandler {
     {
         Mat dst = null;
         if((src.cols() == 1 && src.rows() == 3) || (src.cols() == 3 && src.rows() == 1)) {
-            Mat R = new Mat();
-            Calib3d.Rodrigues(src, R);
-            dst = CameraRotationHandler.Euler(R, argType);
+            try (MatPool.Scope scope = MatPool.getDefault().open()) {
+                Mat R = scope.acquire(3, 3, CvType.CV_64F);
+                Calib3d.Rodrigues(src, R);
+                dst = CameraRotationHandler.Euler(R, argType);
+            }
         }
         return dst;
     }
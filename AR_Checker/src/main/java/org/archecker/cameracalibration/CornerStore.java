@@ -0,0 +1,196 @@
+package org.archecker.cameracalibration;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+/**
+ * Detected corners of all captured views in one growable direct float arena. Every view
+ * takes the same stride of (x, y) pairs, so a view is addressed by its index alone.
+ * Removing a view moves the last view into the freed slot.
+ */
+class CornerStore {
+    private static final int BYTES_PER_FLOAT = 4;
+    private static final int INITIAL_VIEWS = 16;
+
+    private final int cornersPerView;
+    private final int stride;
+    private ByteBuffer arena;
+    private FloatBuffer floats;
+    private float[] scratch;
+    private int views;
+
+    CornerStore(int cornersPerView) {
+        this(cornersPerView, INITIAL_VIEWS);
+    }
+
+    private CornerStore(int cornersPerView, int capacityViews) {
+        this.cornersPerView = cornersPerView;
+        this.stride = cornersPerView * 2;
+        allocate(capacityViews);
+    }
+
+    private void allocate(int capacityViews) {
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacityViews * stride * BYTES_PER_FLOAT)
+                .order(ByteOrder.nativeOrder());
+        FloatBuffer grownFloats = grown.asFloatBuffer();
+        if (floats != null) {
+            FloatBuffer used = floats.duplicate();
+            used.position(0);
+            used.limit(views * stride);
+            grownFloats.put(used);
+        }
+        arena = grown;
+        floats = grownFloats;
+        scratch = new float[stride];
+    }
+
+    private int capacity() {
+        return floats.capacity() / stride;
+    }
+
+    /**
+     * Appends the corners of one view.
+     * @return the index of the new view
+     */
+    public int add(Mat corners) {
+        if (corners.total() != cornersPerView) {
+            throw new IllegalArgumentException("Expected " + cornersPerView + " corners, got " + corners.total());
+        }
+        corners.get(0, 0, scratch);
+        return add(scratch);
+    }
+
+    /**
+     * Appends one view given as interleaved (x, y) pairs.
+     * @return the index of the new view
+     */
+    public int add(float[] corners) {
+        if (corners.length != stride) {
+            throw new IllegalArgumentException("Expected " + stride + " coordinates, got " + corners.length);
+        }
+        if (views == capacity()) {
+            allocate(capacity() * 2);
+        }
+        int offset = views * stride;
+        for (int i = 0; i < stride; i++) {
+            floats.put(offset + i, corners[i]);
+        }
+        return views++;
+    }
+
+    /**
+     * Removes a view in O(1) by moving the last view into its slot. Callers removing
+     * several views must do so in descending index order.
+     */
+    public void remove(int index) {
+        checkIndex(index);
+        int last = views - 1;
+        if (index != last) {
+            int from = last * stride;
+            int to = index * stride;
+            for (int i = 0; i < stride; i++) {
+                floats.put(to + i, floats.get(from + i));
+            }
+        }
+        views--;
+    }
+
+    /** An independent copy of the stored views, sized to fit them. */
+    public CornerStore snapshot() {
+        CornerStore copy = new CornerStore(cornersPerView, Math.max(1, views));
+        FloatBuffer used = floats.duplicate();
+        used.position(0);
+        used.limit(views * stride);
+        copy.floats.put(used);
+        copy.views = views;
+        return copy;
+    }
+
+    public void clear() {
+        views = 0;
+    }
+
+    public int size() {
+        return views;
+    }
+
+    public int getCornersPerView() {
+        return cornersPerView;
+    }
+
+    public void get(int index, float[] dst) {
+        checkIndex(index);
+        int offset = index * stride;
+        for (int i = 0; i < stride; i++) {
+            dst[i] = floats.get(offset + i);
+        }
+    }
+
+    /**
+     * A CV_32FC2 Mat header over the arena, no pixels are copied. It stays valid only
+     * until the next add or remove.
+     */
+    public Mat view(int index) {
+        checkIndex(index);
+        ByteBuffer slice = arena.duplicate();
+        slice.position(index * stride * BYTES_PER_FLOAT);
+        slice.limit((index + 1) * stride * BYTES_PER_FLOAT);
+        return new Mat(cornersPerView, 1, CvType.CV_32FC2, slice.slice());
+    }
+
+    /** Headers over all views, in index order, for calls such as calibrateCamera. */
+    public List<Mat> views() {
+        List<Mat> list = new ArrayList<>(views);
+        for (int i = 0; i < views; i++) {
+            list.add(view(i));
+        }
+        return list;
+    }
+
+    /** Bytes held by the stored views. */
+    public long footprintBytes() {
+        return (long) views * stride * BYTES_PER_FLOAT;
+    }
+
+    /** Bytes {@link #writeTo(ByteBuffer)} appends. */
+    public int encodedBytes() {
+        return 2 * BYTES_PER_FLOAT + views * stride * BYTES_PER_FLOAT;
+    }
+
+    /**
+     * Appends the view count and the used part of the arena in the byte order of {@code out}.
+     */
+    public void writeTo(ByteBuffer out) {
+        out.putInt(cornersPerView);
+        out.putInt(views);
+        FloatBuffer used = floats.duplicate();
+        used.position(0);
+        used.limit(views * stride);
+        out.asFloatBuffer().put(used);
+        out.position(out.position() + views * stride * BYTES_PER_FLOAT);
+    }
+
+    public static CornerStore readFrom(ByteBuffer in) {
+        int cornersPerView = in.getInt();
+        int views = in.getInt();
+        CornerStore store = new CornerStore(cornersPerView, Math.max(INITIAL_VIEWS, views));
+        FloatBuffer stored = in.asFloatBuffer();
+        stored.limit(views * store.stride);
+        store.floats.put(stored);
+        store.views = views;
+        in.position(in.position() + views * store.stride * BYTES_PER_FLOAT);
+        return store;
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= views) {
+            throw new IndexOutOfBoundsException("View " + index + " of " + views);
+        }
+    }
+}
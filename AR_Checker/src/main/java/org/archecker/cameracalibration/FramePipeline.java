@@ -0,0 +1,117 @@
+package org.archecker.cameracalibration;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.archecker.guide.GuideMode;
+import org.opencv.android.CameraBridgeViewBase.CvCameraViewFrame;
+import org.opencv.core.Mat;
+
+/**
+ * Runs the stages of the current preview mode over every camera frame. All stages are created
+ * once; switching modes only swaps the ordered stage list, so no buffers are torn down.
+ * Detection runs on its own thread, which lets it work on the newest frame while the camera
+ * thread draws the overlay.
+ */
+class FramePipeline {
+    enum Mode {
+        PREVIEW,
+        CALIBRATION,
+        UNDISTORTION,
+        COMPARISON
+    }
+
+    private final ConvertStage mConvert = new ConvertStage();
+    private final DetectStage mDetect = new DetectStage();
+    private final CalibrationOverlayStage mOverlay = new CalibrationOverlayStage();
+    private final GuideOverlayStage mGuide = new GuideOverlayStage();
+    private final UndistortStage mUndistort = new UndistortStage();
+    private final CompareStage mCompare = new CompareStage();
+    private final List<FrameStage> mAllStages = Collections.unmodifiableList(Arrays.<FrameStage>asList(
+            mConvert, mDetect, mOverlay, mGuide, mUndistort, mCompare));
+
+    private final FrameContext mFrame = new FrameContext();
+    private volatile FrameStage[] mStages;
+    private volatile Mode mMode;
+    private volatile CameraCalibrator mCalibrator;
+
+    FramePipeline() {
+        setMode(Mode.PREVIEW);
+    }
+
+    /**
+     * Reconfigures the stages. Leaving calibration mode drops the calibration guide.
+     */
+    public void setMode(Mode mode) {
+        FrameStage[] stages;
+        switch (mode) {
+            case CALIBRATION:
+                stages = new FrameStage[]{mConvert, mDetect, mOverlay, mGuide};
+                break;
+            case UNDISTORTION:
+                stages = new FrameStage[]{mConvert, mUndistort};
+                break;
+            case COMPARISON:
+                stages = new FrameStage[]{mConvert, mCompare};
+                break;
+            default:
+                stages = new FrameStage[]{mConvert};
+                break;
+        }
+        if (mode != Mode.CALIBRATION) {
+            mGuide.setCalibrationGuide(null);
+        }
+        mStages = stages;
+        mMode = mode;
+    }
+
+    public Mode getMode() {
+        return mMode;
+    }
+
+    public void setCalibrator(CameraCalibrator calibrator) {
+        mCalibrator = calibrator;
+    }
+
+    public void setCalibrationGuide(GuideMode guide) {
+        if (mMode != Mode.CALIBRATION) {
+            throw new RuntimeException("Calibration guide not supported for this kind of frame renderer");
+        }
+        mGuide.setCalibrationGuide(guide);
+    }
+
+    /** See {@link CompareStage#setSplit(float)}. */
+    public void setComparisonSplit(float fraction) {
+        mCompare.setSplit(fraction);
+    }
+
+    public PatternDetectionWorker getDetectionWorker() {
+        return mDetect.getDetectionWorker();
+    }
+
+    /** Every stage, whether it runs in the current mode or not. */
+    public List<FrameStage> getStages() {
+        return mAllStages;
+    }
+
+    /** Called on the camera thread for each frame. */
+    public Mat render(CvCameraViewFrame inputFrame) {
+        FrameStage[] stages = mStages;
+        mFrame.input = inputFrame;
+        mFrame.calibrator = mCalibrator;
+        mFrame.output = null;
+        for (FrameStage stage : stages) {
+            stage.run(mFrame);
+        }
+        mFrame.input = null;
+        return mFrame.output;
+    }
+
+    public void release() {
+        for (FrameStage stage : mAllStages) {
+            stage.release();
+        }
+        mFrame.corners.release();
+    }
+}
@@ -0,0 +1,243 @@
+package org.archecker.cameracalibration;
+
+import org.archecker.guide.GuideMode;
+import org.archecker.imageprocessing.MatPool;
+import org.archecker.imageprocessing.UndistortionMaps;
+import org.opencv.android.CameraBridgeViewBase.CvCameraViewFrame;
+import org.opencv.android.FrameTimings;
+import org.opencv.android.LatencyHistogram;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * State one camera frame carries through the stages of a {@link FramePipeline}.
+ */
+class FrameContext {
+    CvCameraViewFrame input;
+    CameraCalibrator calibrator;
+    /** The frame to display. Stages producing a new image replace it with their own buffer. */
+    Mat output;
+    boolean patternWasFound;
+    final MatOfPoint2f corners = new MatOfPoint2f();
+}
+
+/**
+ * One step of the frame pipeline. A stage owns its buffers for its whole life, the pipeline
+ * only changes which stages run. Each run is recorded in the stage's {@link FrameTimings}
+ * histogram.
+ */
+abstract class FrameStage {
+    private final String mName;
+    private final LatencyHistogram mTiming;
+    private long mLastNanos;
+
+    FrameStage(String name) {
+        mName = name;
+        mTiming = FrameTimings.get(name);
+    }
+
+    final void run(FrameContext frame) {
+        long start = System.nanoTime();
+        process(frame);
+        mLastNanos = System.nanoTime() - start;
+        mTiming.record(mLastNanos);
+    }
+
+    abstract void process(FrameContext frame);
+
+    void release() {
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public long getLastNanos() {
+        return mLastNanos;
+    }
+
+    public LatencyHistogram getTiming() {
+        return mTiming;
+    }
+
+    /**
+     * Rebuilds the tables when the calibrator has published new coefficients or the frame
+     * size changed.
+     */
+    static void updateUndistortionMaps(CameraCalibrator calibrator, UndistortionMaps maps, Size size) {
+        if (maps.isValid(calibrator.getCalibrationVersion(), size)) {
+            return;
+        }
+        try (MatPool.Scope scope = MatPool.getDefault().open()) {
+            Mat cameraMatrix = scope.acquire(3, 3, CvType.CV_64FC1);
+            Mat distortion = scope.acquire(5, 1, CvType.CV_64FC1);
+            int version = calibrator.copyIntrinsics(cameraMatrix, distortion);
+            maps.build(cameraMatrix, distortion, size, version);
+        }
+    }
+}
+
+class ConvertStage extends FrameStage {
+    ConvertStage() {
+        super("convert");
+    }
+
+    @Override
+    void process(FrameContext frame) {
+        frame.output = frame.input.rgba();
+    }
+}
+
+/**
+ * Hands the gray frame to the detection thread and takes the newest published corners. While
+ * the later stages draw this frame, the detector already works on it, so the overlay shows
+ * the corners of an earlier frame.
+ */
+class DetectStage extends FrameStage {
+    private PatternDetectionWorker mWorker;
+
+    DetectStage() {
+        super("submitDetection");
+    }
+
+    @Override
+    void process(FrameContext frame) {
+        if (mWorker == null) {
+            mWorker = new PatternDetectionWorker(frame.calibrator);
+            mWorker.start();
+        } else {
+            mWorker.setCalibrator(frame.calibrator);
+        }
+        mWorker.submit(frame.input.gray());
+        frame.patternWasFound = frame.calibrator.copyPattern(frame.corners);
+    }
+
+    public PatternDetectionWorker getDetectionWorker() {
+        return mWorker;
+    }
+
+    @Override
+    void release() {
+        if (mWorker != null) {
+            mWorker.stop();
+            mWorker = null;
+        }
+    }
+}
+
+class CalibrationOverlayStage extends FrameStage {
+    CalibrationOverlayStage() {
+        super("overlay");
+    }
+
+    @Override
+    void process(FrameContext frame) {
+        frame.calibrator.renderFrame(frame.output);
+    }
+}
+
+class GuideOverlayStage extends FrameStage {
+    private volatile GuideMode mGuide;
+
+    GuideOverlayStage() {
+        super("guide");
+    }
+
+    public void setCalibrationGuide(GuideMode guide) {
+        mGuide = guide;
+    }
+
+    @Override
+    void process(FrameContext frame) {
+        GuideMode guide = mGuide;
+        if (guide != null) {
+            guide.processFrame(frame.output, frame.patternWasFound, frame.corners, frame.calibrator);
+        }
+    }
+}
+
+class UndistortStage extends FrameStage {
+    private final UndistortionMaps mMaps = new UndistortionMaps();
+    private final Mat mUndistortedFrame = new Mat();
+
+    UndistortStage() {
+        super("undistort");
+    }
+
+    @Override
+    void process(FrameContext frame) {
+        updateUndistortionMaps(frame.calibrator, mMaps, frame.output.size());
+        mMaps.remap(frame.output, mUndistortedFrame);
+        frame.output = mUndistortedFrame;
+    }
+
+    @Override
+    void release() {
+        mMaps.release();
+        mUndistortedFrame.release();
+    }
+}
+
+/**
+ * Shows the raw frame left of the split and the undistorted left part of the same frame to
+ * the right of it. Only the shown columns are remapped.
+ */
+class CompareStage extends FrameStage {
+    private static final Scalar BORDER_COLOR = new Scalar(251, 253, 254);
+    private static final float MIN_SPLIT = 0.1f;
+    private static final float MAX_SPLIT = 0.9f;
+    private final UndistortionMaps mMaps = new UndistortionMaps();
+    private final Mat mUndistortedPart = new Mat();
+    private final Point mBorderTopLeft = new Point();
+    private final Point mBorderBottomRight = new Point();
+    private volatile float mSplit = 0.5f;
+    private int mSplitColumn = -1;
+    private int mWidth;
+
+    CompareStage() {
+        super("compose");
+    }
+
+    /**
+     * Moves the split, as a fraction of the frame width. Can be called from any thread.
+     */
+    public void setSplit(float fraction) {
+        mSplit = Math.max(MIN_SPLIT, Math.min(MAX_SPLIT, fraction));
+    }
+
+    @Override
+    void process(FrameContext frame) {
+        Mat comparisonFrame = frame.output;
+        updateUndistortionMaps(frame.calibrator, mMaps, comparisonFrame.size());
+        updateSplit(comparisonFrame.cols(), comparisonFrame.rows());
+
+        mMaps.remap(comparisonFrame, mUndistortedPart, 0, mWidth - mSplitColumn);
+        Mat right = comparisonFrame.colRange(mSplitColumn, mWidth);
+        mUndistortedPart.copyTo(right);
+        right.release();
+        Imgproc.rectangle(comparisonFrame, mBorderTopLeft, mBorderBottomRight, BORDER_COLOR, -1);
+    }
+
+    private void updateSplit(int width, int height) {
+        int splitColumn = Math.round(width * mSplit);
+        if (splitColumn == mSplitColumn && width == mWidth) {
+            return;
+        }
+        mWidth = width;
+        mSplitColumn = splitColumn;
+        int borderShift = (int)(width * 0.005);
+        mBorderTopLeft.set(new double[]{splitColumn - borderShift, 0});
+        mBorderBottomRight.set(new double[]{splitColumn + borderShift, height});
+    }
+
+    @Override
+    void release() {
+        mMaps.release();
+        mUndistortedPart.release();
+    }
+}
@@ -0,0 +1,111 @@
+package org.archecker.cameracalibration;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import android.os.BadParcelableException;
+import android.os.Parcel;
+
+/**
+ * Moves a binary payload through a Parcel. Small payloads travel inline. Larger ones are
+ * written to a file in the temporary directory and only the path is parcelled, which keeps
+ * the Binder transaction small. Intents refuse file descriptors, so a path is used instead
+ * of a ParcelFileDescriptor. The receiver maps the file. Android unparcels extras again when
+ * an activity is recreated, so reading leaves the file in place; the owner of the parcels
+ * removes the files with {@link #deleteFiles()} once none of them can be read any more.
+ */
+final class ParcelPayload {
+    static final int INLINE_LIMIT = 128 * 1024;
+    private static final int INLINE = 0;
+    private static final int FILE = 1;
+    private static final String FILE_PREFIX = "calibrator";
+    private static final String FILE_SUFFIX = ".bin";
+
+    private ParcelPayload() {
+    }
+
+    /**
+     * Writes the bytes between position 0 and the limit of a heap buffer.
+     */
+    static void write(Parcel dest, ByteBuffer payload) {
+        int length = payload.limit();
+        if (length <= INLINE_LIMIT) {
+            dest.writeInt(INLINE);
+            dest.writeByteArray(payload.array(), payload.arrayOffset(), length);
+            return;
+        }
+
+        FileOutputStream out = null;
+        try {
+            File file = File.createTempFile(FILE_PREFIX, FILE_SUFFIX);
+            out = new FileOutputStream(file);
+            out.write(payload.array(), payload.arrayOffset(), length);
+            out.getFD().sync();
+            dest.writeInt(FILE);
+            dest.writeString(file.getAbsolutePath());
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to write calibrator payload", e);
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    static ByteBuffer read(Parcel source) {
+        int mode = source.readInt();
+        if (mode == INLINE) {
+            return ByteBuffer.wrap(source.createByteArray()).order(ByteOrder.nativeOrder());
+        }
+        if (mode != FILE) {
+            throw new BadParcelableException("Unknown payload mode " + mode);
+        }
+
+        File file = new File(source.readString());
+        RandomAccessFile in = null;
+        try {
+            in = new RandomAccessFile(file, "r");
+            ByteBuffer payload = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+            return payload.order(ByteOrder.nativeOrder());
+        } catch (IOException e) {
+            throw new BadParcelableException(e);
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes all payload files in the temporary directory, including those left behind by
+     * parcels that were never read. Buffers already mapped stay valid.
+     */
+    static void deleteFiles() {
+        File[] files = new File(System.getProperty("java.io.tmpdir")).listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+            }
+        });
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            file.delete();
+        }
+    }
+}
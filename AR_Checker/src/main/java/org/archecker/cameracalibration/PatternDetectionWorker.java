@@ -0,0 +1,154 @@
+package org.archecker.cameracalibration;
+
+import org.archecker.imageprocessing.MatPool;
+import org.opencv.android.FrameTimings;
+import org.opencv.android.LatencyHistogram;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint2f;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Runs chessboard detection on its own thread so the preview thread never waits for
+ * findChessboardCorners. Only the newest submitted frame is kept; a frame that is still
+ * pending when the next one arrives is dropped. Results are published to the calibrator,
+ * which the preview thread draws from.
+ */
+class PatternDetectionWorker implements Runnable {
+    private static final String TAG = "PatternDetectionWorker";
+    private static final long STATS_PERIOD_MS = 1000;
+    private static final LatencyHistogram sDetectionTiming = FrameTimings.get("findChessboardCorners");
+
+    private volatile CameraCalibrator mCalibrator;
+    private final Thread mThread;
+    private final Object mLock = new Object();
+
+    private Mat mPendingFrame = new Mat();
+    private Mat mWorkFrame = new Mat();
+    private final MatOfPoint2f mWorkCorners = new MatOfPoint2f();
+    private boolean mFramePending = false;
+    private long mPendingTimestamp;
+    private boolean mStopped = false;
+
+    private volatile long mLastLatencyMs;
+    private volatile long mDroppedFrames;
+    private volatile long mDetections;
+    private volatile long mPublishedTimestamp;
+    private long mStatsPeriodStart;
+
+    PatternDetectionWorker(CameraCalibrator calibrator) {
+        mCalibrator = calibrator;
+        mThread = new Thread(this, TAG);
+    }
+
+    /**
+     * Detects for another calibrator from the next frame on. The buffers and the thread are kept.
+     */
+    public void setCalibrator(CameraCalibrator calibrator) {
+        mCalibrator = calibrator;
+    }
+
+    public void start() {
+        mThread.start();
+    }
+
+    public void stop() {
+        synchronized (mLock) {
+            mStopped = true;
+            mLock.notify();
+        }
+        try {
+            mThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        mPendingFrame.release();
+        mWorkFrame.release();
+        mWorkCorners.release();
+    }
+
+    /**
+     * Hands the newest gray frame to the worker. The pixels are copied into a buffer owned
+     * by the worker, so the caller may reuse grayFrame as soon as this returns.
+     */
+    public void submit(Mat grayFrame) {
+        synchronized (mLock) {
+            if (mStopped) {
+                return;
+            }
+            if (mFramePending) {
+                mDroppedFrames++;
+            }
+            grayFrame.copyTo(mPendingFrame);
+            mPendingTimestamp = SystemClock.elapsedRealtime();
+            mFramePending = true;
+            mLock.notify();
+        }
+    }
+
+    @Override
+    public void run() {
+        while (true) {
+            long frameTimestamp;
+            synchronized (mLock) {
+                while (!mFramePending && !mStopped) {
+                    try {
+                        mLock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (mStopped) {
+                    return;
+                }
+                Mat swap = mWorkFrame;
+                mWorkFrame = mPendingFrame;
+                mPendingFrame = swap;
+                frameTimestamp = mPendingTimestamp;
+                mFramePending = false;
+            }
+
+            long detectStart = SystemClock.elapsedRealtime();
+            CameraCalibrator calibrator = mCalibrator;
+            long detectStartNanos = System.nanoTime();
+            boolean found = calibrator.detectPattern(mWorkFrame, mWorkCorners);
+            sDetectionTiming.recordSince(detectStartNanos);
+            calibrator.publishPattern(found, mWorkCorners);
+            mLastLatencyMs = SystemClock.elapsedRealtime() - detectStart;
+            mPublishedTimestamp = frameTimestamp;
+            mDetections++;
+            logStats();
+        }
+    }
+
+    private void logStats() {
+        long now = SystemClock.elapsedRealtime();
+        if (mStatsPeriodStart <= 0) mStatsPeriodStart = now;
+        if (now - mStatsPeriodStart >= STATS_PERIOD_MS) {
+            Log.d(TAG, "Detection latency: " + mLastLatencyMs + " ms, dropped frames: " + mDroppedFrames
+                    + ", corners age: " + getCornersAgeMs() + " ms. " + MatPool.getDefault());
+            mStatsPeriodStart = now;
+        }
+    }
+
+    /** Duration of the most recent findChessboardCorners run. */
+    public long getLastLatencyMs() {
+        return mLastLatencyMs;
+    }
+
+    /** Frames that were overwritten by a newer one before the worker picked them up. */
+    public long getDroppedFrames() {
+        return mDroppedFrames;
+    }
+
+    public long getDetections() {
+        return mDetections;
+    }
+
+    /** Age of the frame the currently drawn corners were detected in, or -1 before the first result. */
+    public long getCornersAgeMs() {
+        long published = mPublishedTimestamp;
+        return published > 0 ? SystemClock.elapsedRealtime() - published : -1;
+    }
+}
@@ -0,0 +1,201 @@
+package org.archecker.cameracalibration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opencv.calib3d.Calib3d;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfDouble;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.MatOfPoint3f;
+
+/**
+ * Bins the captured views by where the board lies in the image and by its pose
+ * (tilt against the optical axis, in-plane rotation and apparent size as a stand-in for
+ * distance). A new view is redundant if a view with the same bins is already held.
+ */
+public class PoseCoverageIndex {
+    public static final int GRID_COLS = 3;
+    public static final int GRID_ROWS = 3;
+    public static final int TILT_BINS = 4;
+    public static final int ROTATION_BINS = 3;
+    public static final int DISTANCE_BINS = 3;
+
+    private static final double TILT_BIN_DEGREES = 15;
+    private static final double ROTATION_BIN_DEGREES = 90.0 / ROTATION_BINS;
+    // Fraction of the image area covered by the board's bounding box.
+    private static final double[] DISTANCE_BIN_AREA = {0.3, 0.1};
+
+    private final int imageWidth;
+    private final int imageHeight;
+    private final List<Integer> viewKeys = new ArrayList<>();
+    private final int[] occupancy = new int[GRID_COLS * GRID_ROWS * TILT_BINS * ROTATION_BINS * DISTANCE_BINS];
+
+    private final Mat rvec = new Mat();
+    private final Mat tvec = new Mat();
+    private final Mat rotation = new Mat();
+    private final Mat approximateCameraMatrix;
+    private final MatOfDouble noDistortion = new MatOfDouble(0, 0, 0, 0, 0);
+    private float[] points = new float[0];
+    private final double[] rotationValues = new double[9];
+
+    public PoseCoverageIndex(int imageWidth, int imageHeight) {
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+        approximateCameraMatrix = Mat.eye(3, 3, CvType.CV_64F);
+        double focalLength = Math.max(imageWidth, imageHeight);
+        approximateCameraMatrix.put(0, 0, focalLength);
+        approximateCameraMatrix.put(1, 1, focalLength);
+        approximateCameraMatrix.put(0, 2, imageWidth / 2.0);
+        approximateCameraMatrix.put(1, 2, imageHeight / 2.0);
+    }
+
+    /**
+     * @param cameraMatrix calibrated intrinsics, or null to use a pinhole guess from the image size
+     * @return the bin key of the view
+     */
+    public int classify(MatOfPoint2f corners, MatOfPoint3f boardPoints, Mat cameraMatrix) {
+        int count = (int) corners.total() * 2;
+        if (points.length != count) {
+            points = new float[count];
+        }
+        corners.get(0, 0, points);
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+        double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        double sumX = 0, sumY = 0;
+        for (int i = 0; i < count; i += 2) {
+            minX = Math.min(minX, points[i]);
+            maxX = Math.max(maxX, points[i]);
+            minY = Math.min(minY, points[i + 1]);
+            maxY = Math.max(maxY, points[i + 1]);
+            sumX += points[i];
+            sumY += points[i + 1];
+        }
+        int n = count / 2;
+        int col = clamp((int) (sumX / n * GRID_COLS / imageWidth), GRID_COLS);
+        int row = clamp((int) (sumY / n * GRID_ROWS / imageHeight), GRID_ROWS);
+
+        double area = (maxX - minX) * (maxY - minY) / ((double) imageWidth * imageHeight);
+        int distance = DISTANCE_BIN_AREA.length;
+        for (int i = 0; i < DISTANCE_BIN_AREA.length; i++) {
+            if (area >= DISTANCE_BIN_AREA[i]) {
+                distance = i;
+                break;
+            }
+        }
+
+        Mat intrinsics = cameraMatrix != null ? cameraMatrix : approximateCameraMatrix;
+        Calib3d.solvePnP(boardPoints, corners, intrinsics, noDistortion, rvec, tvec);
+        Calib3d.Rodrigues(rvec, rotation);
+        rotation.get(0, 0, rotationValues);
+        // The board normal is the third column of R; its angle to the optical axis is the tilt.
+        double tiltDegrees = Math.toDegrees(Math.acos(Math.min(1.0, Math.abs(rotationValues[8]))));
+        double rollDegrees = Math.toDegrees(Math.atan2(rotationValues[3], rotationValues[0]));
+        double rollModulo = ((rollDegrees % 90) + 90) % 90;
+
+        int tilt = clamp((int) (tiltDegrees / TILT_BIN_DEGREES), TILT_BINS);
+        int roll = clamp((int) (rollModulo / ROTATION_BIN_DEGREES), ROTATION_BINS);
+
+        return (((row * GRID_COLS + col) * TILT_BINS + tilt) * ROTATION_BINS + roll) * DISTANCE_BINS + distance;
+    }
+
+    public boolean isRedundant(int key) {
+        return occupancy[key] > 0;
+    }
+
+    public void add(int key) {
+        viewKeys.add(key);
+        occupancy[key]++;
+    }
+
+    /**
+     * Mirrors {@link CornerStore#remove(int)}: the last view takes the removed view's index.
+     */
+    public void remove(int viewIndex) {
+        int key = viewKeys.get(viewIndex);
+        int last = viewKeys.remove(viewKeys.size() - 1);
+        if (viewIndex < viewKeys.size()) {
+            viewKeys.set(viewIndex, last);
+        }
+        occupancy[key]--;
+    }
+
+    public void clear() {
+        viewKeys.clear();
+        for (int i = 0; i < occupancy.length; i++) {
+            occupancy[i] = 0;
+        }
+    }
+
+    public int size() {
+        return viewKeys.size();
+    }
+
+    /** Image grid cells (row-major) that no view has covered yet. */
+    public List<Integer> getEmptyImageCells() {
+        boolean[] covered = new boolean[GRID_COLS * GRID_ROWS];
+        for (int key : viewKeys) {
+            covered[key / (TILT_BINS * ROTATION_BINS * DISTANCE_BINS)] = true;
+        }
+        return emptyBins(covered);
+    }
+
+    /** Tilt bins of 15 degrees that no view has covered yet. */
+    public List<Integer> getEmptyTiltBins() {
+        boolean[] covered = new boolean[TILT_BINS];
+        for (int key : viewKeys) {
+            covered[key / (ROTATION_BINS * DISTANCE_BINS) % TILT_BINS] = true;
+        }
+        return emptyBins(covered);
+    }
+
+    public List<Integer> getEmptyRotationBins() {
+        boolean[] covered = new boolean[ROTATION_BINS];
+        for (int key : viewKeys) {
+            covered[key / DISTANCE_BINS % ROTATION_BINS] = true;
+        }
+        return emptyBins(covered);
+    }
+
+    /** Distance bins, from near (0) to far, that no view has covered yet. */
+    public List<Integer> getEmptyDistanceBins() {
+        boolean[] covered = new boolean[DISTANCE_BINS];
+        for (int key : viewKeys) {
+            covered[key % DISTANCE_BINS] = true;
+        }
+        return emptyBins(covered);
+    }
+
+    /** Frees the native buffers. The index must not be used afterwards. */
+    public void release() {
+        rvec.release();
+        tvec.release();
+        rotation.release();
+        approximateCameraMatrix.release();
+        noDistortion.release();
+    }
+
+    @Override
+    public String toString() {
+        return "Views: " + viewKeys.size()
+                + ", empty cells: " + getEmptyImageCells()
+                + ", empty tilt bins: " + getEmptyTiltBins()
+                + ", empty rotation bins: " + getEmptyRotationBins()
+                + ", empty distance bins: " + getEmptyDistanceBins();
+    }
+
+    private static List<Integer> emptyBins(boolean[] covered) {
+        List<Integer> empty = new ArrayList<>();
+        for (int i = 0; i < covered.length; i++) {
+            if (!covered[i]) {
+                empty.add(i);
+            }
+        }
+        return empty;
+    }
+
+    private static int clamp(int bin, int bins) {
+        return Math.max(0, Math.min(bins - 1, bin));
+    }
+}
@@ -0,0 +1,91 @@
+package org.archecker.cameracalibration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.opencv.calib3d.Calib3d;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.core.TermCriteria;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Coarse-to-fine chessboard search. The board is located on a downscaled pyramid level and
+ * the corners are mapped back and refined with cornerSubPix on the full-resolution frame.
+ * Level 0 searches the full-resolution frame directly.
+ */
+class PyramidChessboardDetector {
+    public static final int DEFAULT_REFINEMENT_WINDOW = 5;
+    private static final TermCriteria SUBPIX_CRITERIA =
+            new TermCriteria(TermCriteria.EPS + TermCriteria.COUNT, 30, 0.01);
+    private static final Size SUBPIX_ZERO_ZONE = new Size(-1, -1);
+
+    private int pyramidLevel = 0;
+    private int refinementWindow = DEFAULT_REFINEMENT_WINDOW;
+    private final List<Mat> pyramid = new ArrayList<>();
+
+    public synchronized void setPyramidLevel(int level) {
+        if (level < 0) {
+            throw new IllegalArgumentException("Pyramid level must not be negative: " + level);
+        }
+        pyramidLevel = level;
+    }
+
+    public synchronized int getPyramidLevel() {
+        return pyramidLevel;
+    }
+
+    /**
+     * @param halfSize half of the cornerSubPix search window side, e.g. 5 for an 11x11 window
+     */
+    public synchronized void setRefinementWindow(int halfSize) {
+        if (halfSize < 1) {
+            throw new IllegalArgumentException("Refinement window must be at least 1: " + halfSize);
+        }
+        refinementWindow = halfSize;
+    }
+
+    public synchronized int getRefinementWindow() {
+        return refinementWindow;
+    }
+
+    public synchronized boolean find(Mat grayFrame, Size patternSize, MatOfPoint2f corners, int flags) {
+        if (pyramidLevel == 0) {
+            return Calib3d.findChessboardCorners(grayFrame, patternSize, corners, flags);
+        }
+
+        Mat level = grayFrame;
+        for (int i = 0; i < pyramidLevel; i++) {
+            if (pyramid.size() <= i) {
+                pyramid.add(new Mat());
+            }
+            Imgproc.pyrDown(level, pyramid.get(i));
+            level = pyramid.get(i);
+        }
+
+        if (!Calib3d.findChessboardCorners(level, patternSize, corners, flags)) {
+            return false;
+        }
+
+        // pyrDown filters and keeps every second pixel, so pixel i on level L is the filtered
+        // full-resolution pixel s*i, s = 2^L, and a coarse corner c maps to s*c.
+        final double scale = 1 << pyramidLevel;
+        Core.multiply(corners, new Scalar(scale, scale), corners);
+
+        // The coarse corners can be off by about one pyramid pixel, so the window has to cover it.
+        int halfSize = Math.max(refinementWindow, (int) scale);
+        Imgproc.cornerSubPix(grayFrame, corners, new Size(halfSize, halfSize),
+                SUBPIX_ZERO_ZONE, SUBPIX_CRITERIA);
+        return true;
+    }
+
+    public synchronized void release() {
+        for (Mat mat : pyramid) {
+            mat.release();
+        }
+        pyramid.clear();
+    }
+}
@@ -0,0 +1,245 @@
+package org.archecker.cameracalibration;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.opencv.calib3d.Calib3d;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfDouble;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.MatOfPoint3f;
+
+/**
+ * Per-view, per-corner and aggregate re-projection errors of a calibration. The views are
+ * projected in parallel on a fork-join pool; every worker thread keeps its own scratch buffers.
+ */
+public class ReprojectionErrors {
+    private static final int VIEWS_PER_TASK = 4;
+    private static final ForkJoinPool POOL = new ForkJoinPool();
+    private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    private final float[] viewErrors;
+    private final float[] cornerErrors;
+    private final int cornersPerView;
+    private final double rms;
+    private final float minViewError;
+    private final float maxViewError;
+    private final float meanViewError;
+
+    private ReprojectionErrors(float[] viewErrors, float[] cornerErrors, int cornersPerView, double rms) {
+        this.viewErrors = viewErrors;
+        this.cornerErrors = cornerErrors;
+        this.cornersPerView = cornersPerView;
+        this.rms = rms;
+
+        float min = Float.MAX_VALUE;
+        float max = 0;
+        float sum = 0;
+        for (float error : viewErrors) {
+            min = Math.min(min, error);
+            max = Math.max(max, error);
+            sum += error;
+        }
+        minViewError = viewErrors.length > 0 ? min : 0;
+        maxViewError = max;
+        meanViewError = viewErrors.length > 0 ? sum / viewErrors.length : 0;
+    }
+
+    /**
+     * All views share the same object points, which is how {@link CameraCalibrator} calibrates.
+     */
+    static ReprojectionErrors compute(Mat objectPoints, List<Mat> imagePoints, List<Mat> rvecs,
+                                      List<Mat> tvecs, Mat cameraMatrix, Mat distortionCoefficients) {
+        int views = imagePoints.size();
+        int cornersPerView = objectPoints.rows();
+        float[] viewErrors = new float[views];
+        float[] cornerErrors = new float[views * cornersPerView];
+        double[] squaredErrors = new double[views];
+
+        MatOfPoint3f points = new MatOfPoint3f(objectPoints);
+        MatOfDouble distortion = new MatOfDouble(distortionCoefficients);
+        POOL.invoke(new ViewRange(0, views, points, imagePoints, rvecs, tvecs, cameraMatrix,
+                distortion, cornersPerView, viewErrors, cornerErrors, squaredErrors));
+
+        double totalError = 0;
+        for (double error : squaredErrors) {
+            totalError += error;
+        }
+        int totalPoints = views * cornersPerView;
+        double rms = totalPoints > 0 ? Math.sqrt(totalError / totalPoints) : 0;
+        return new ReprojectionErrors(viewErrors, cornerErrors, cornersPerView, rms);
+    }
+
+    /**
+     * The errors after {@link CameraCalibrator#removeFrame(int)}: the last view moves into the
+     * removed view's index, and the aggregates cover the remaining views.
+     */
+    ReprojectionErrors withoutView(int view) {
+        int last = viewErrors.length - 1;
+        if (view < 0 || view > last) {
+            throw new IndexOutOfBoundsException("View " + view + " of " + viewErrors.length);
+        }
+        float[] views = new float[last];
+        float[] corners = new float[last * cornersPerView];
+        System.arraycopy(viewErrors, 0, views, 0, last);
+        System.arraycopy(cornerErrors, 0, corners, 0, last * cornersPerView);
+        if (view != last) {
+            views[view] = viewErrors[last];
+            System.arraycopy(cornerErrors, last * cornersPerView, corners, view * cornersPerView, cornersPerView);
+        }
+        double squared = 0;
+        for (float error : corners) {
+            squared += (double) error * error;
+        }
+        double rms = corners.length > 0 ? Math.sqrt(squared / corners.length) : 0;
+        return new ReprojectionErrors(views, corners, cornersPerView, rms);
+    }
+
+    /** Bytes {@link #writeTo(ByteBuffer)} appends. */
+    int encodedBytes() {
+        return 3 * 4 + 8 + (viewErrors.length + cornerErrors.length) * 4;
+    }
+
+    void writeTo(ByteBuffer out) {
+        out.putInt(viewErrors.length);
+        out.putInt(cornersPerView);
+        out.putDouble(rms);
+        out.putInt(cornerErrors.length);
+        out.asFloatBuffer().put(viewErrors).put(cornerErrors);
+        out.position(out.position() + (viewErrors.length + cornerErrors.length) * 4);
+    }
+
+    static ReprojectionErrors readFrom(ByteBuffer in) {
+        float[] viewErrors = new float[in.getInt()];
+        int cornersPerView = in.getInt();
+        double rms = in.getDouble();
+        float[] cornerErrors = new float[in.getInt()];
+        in.asFloatBuffer().get(viewErrors).get(cornerErrors);
+        in.position(in.position() + (viewErrors.length + cornerErrors.length) * 4);
+        return new ReprojectionErrors(viewErrors, cornerErrors, cornersPerView, rms);
+    }
+
+    public double getRms() {
+        return rms;
+    }
+
+    public int getViewCount() {
+        return viewErrors.length;
+    }
+
+    public float getViewError(int view) {
+        return viewErrors[view];
+    }
+
+    public float[] getViewErrors() {
+        return viewErrors.clone();
+    }
+
+    /** Distance in pixels between the detected and the re-projected corner. */
+    public float getCornerError(int view, int corner) {
+        return cornerErrors[view * cornersPerView + corner];
+    }
+
+    public int getCornersPerView() {
+        return cornersPerView;
+    }
+
+    public float getMinViewError() {
+        return minViewError;
+    }
+
+    public float getMaxViewError() {
+        return maxViewError;
+    }
+
+    public float getMeanViewError() {
+        return meanViewError;
+    }
+
+    private static class Scratch {
+        final MatOfPoint2f projected = new MatOfPoint2f();
+        float[] projectedValues = new float[0];
+        float[] detectedValues = new float[0];
+
+        void ensureCapacity(int values) {
+            if (projectedValues.length < values) {
+                projectedValues = new float[values];
+                detectedValues = new float[values];
+            }
+        }
+    }
+
+    private static class ViewRange extends RecursiveAction {
+        private final int from;
+        private final int to;
+        private final MatOfPoint3f objectPoints;
+        private final List<Mat> imagePoints;
+        private final List<Mat> rvecs;
+        private final List<Mat> tvecs;
+        private final Mat cameraMatrix;
+        private final MatOfDouble distortion;
+        private final int cornersPerView;
+        private final float[] viewErrors;
+        private final float[] cornerErrors;
+        private final double[] squaredErrors;
+
+        ViewRange(int from, int to, MatOfPoint3f objectPoints, List<Mat> imagePoints, List<Mat> rvecs,
+                  List<Mat> tvecs, Mat cameraMatrix, MatOfDouble distortion, int cornersPerView,
+                  float[] viewErrors, float[] cornerErrors, double[] squaredErrors) {
+            this.from = from;
+            this.to = to;
+            this.objectPoints = objectPoints;
+            this.imagePoints = imagePoints;
+            this.rvecs = rvecs;
+            this.tvecs = tvecs;
+            this.cameraMatrix = cameraMatrix;
+            this.distortion = distortion;
+            this.cornersPerView = cornersPerView;
+            this.viewErrors = viewErrors;
+            this.cornerErrors = cornerErrors;
+            this.squaredErrors = squaredErrors;
+        }
+
+        private ViewRange split(int from, int to) {
+            return new ViewRange(from, to, objectPoints, imagePoints, rvecs, tvecs, cameraMatrix,
+                    distortion, cornersPerView, viewErrors, cornerErrors, squaredErrors);
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > VIEWS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(split(from, middle), split(middle, to));
+                return;
+            }
+
+            Scratch scratch = SCRATCH.get();
+            int values = cornersPerView * 2;
+            scratch.ensureCapacity(values);
+            for (int view = from; view < to; view++) {
+                Calib3d.projectPoints(objectPoints, rvecs.get(view), tvecs.get(view),
+                        cameraMatrix, distortion, scratch.projected);
+                scratch.projected.get(0, 0, scratch.projectedValues);
+                imagePoints.get(view).get(0, 0, scratch.detectedValues);
+
+                double squaredError = 0;
+                for (int corner = 0; corner < cornersPerView; corner++) {
+                    double dx = scratch.detectedValues[corner * 2] - scratch.projectedValues[corner * 2];
+                    double dy = scratch.detectedValues[corner * 2 + 1] - scratch.projectedValues[corner * 2 + 1];
+                    double squared = dx * dx + dy * dy;
+                    cornerErrors[view * cornersPerView + corner] = (float) Math.sqrt(squared);
+                    squaredError += squared;
+                }
+                squaredErrors[view] = squaredError;
+                viewErrors[view] = (float) Math.sqrt(squaredError / cornersPerView);
+            }
+        }
+    }
+}
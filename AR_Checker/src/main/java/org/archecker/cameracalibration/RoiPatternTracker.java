@@ -0,0 +1,142 @@
+package org.archecker.cameracalibration;
+
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Rect;
+
+/**
+ * Limits the chessboard search to the area around the corners found in the previous frame.
+ * The margin around the last bounding box grows with the estimated board motion and with
+ * every miss. After too many consecutive misses the search falls back to the full frame.
+ */
+class RoiPatternTracker {
+    public static final int DEFAULT_MAX_MISSES = 3;
+    private static final double MIN_MARGIN_FRACTION = 0.25;
+    private static final double MOTION_GAIN = 2.0;
+    private static final double MOTION_SMOOTHING = 0.5;
+
+    private boolean enabled = false;
+    private int maxMisses = DEFAULT_MAX_MISSES;
+
+    private boolean tracking = false;
+    private double minX, minY, maxX, maxY;
+    private double centerX, centerY;
+    private double motion;
+    private int consecutiveMisses;
+    private float[] points = new float[0];
+
+    private long roiHits;
+    private long roiMisses;
+    private long fullFrameSearches;
+
+    public synchronized void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (!enabled) {
+            tracking = false;
+        }
+    }
+
+    public synchronized boolean isEnabled() {
+        return enabled;
+    }
+
+    public synchronized void setMaxMisses(int maxMisses) {
+        if (maxMisses < 1) {
+            throw new IllegalArgumentException("At least one miss has to be allowed: " + maxMisses);
+        }
+        this.maxMisses = maxMisses;
+    }
+
+    /**
+     * @return the region to search in, or null if the whole frame has to be searched
+     */
+    public synchronized Rect searchRegion(int frameWidth, int frameHeight) {
+        if (!enabled || !tracking || consecutiveMisses >= maxMisses) {
+            fullFrameSearches++;
+            return null;
+        }
+
+        double boardSize = Math.max(maxX - minX, maxY - minY);
+        double margin = (boardSize * MIN_MARGIN_FRACTION + motion * MOTION_GAIN) * (1 + consecutiveMisses);
+        int x0 = (int) Math.max(0, Math.floor(minX - margin));
+        int y0 = (int) Math.max(0, Math.floor(minY - margin));
+        int x1 = (int) Math.min(frameWidth, Math.ceil(maxX + margin));
+        int y1 = (int) Math.min(frameHeight, Math.ceil(maxY + margin));
+        if (x1 - x0 >= frameWidth && y1 - y0 >= frameHeight) {
+            fullFrameSearches++;
+            return null;
+        }
+        return new Rect(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    /**
+     * Records the outcome of a search. Corners are expected in full-frame coordinates.
+     */
+    public synchronized void update(boolean roiSearch, boolean found, MatOfPoint2f corners) {
+        if (roiSearch) {
+            if (found) roiHits++;
+            else roiMisses++;
+        }
+
+        if (!found) {
+            if (roiSearch) {
+                consecutiveMisses++;
+            } else {
+                tracking = false;
+                motion = 0;
+            }
+            return;
+        }
+
+        int count = (int) corners.total() * 2;
+        if (points.length != count) {
+            points = new float[count];
+        }
+        corners.get(0, 0, points);
+        double x0 = Double.MAX_VALUE, y0 = Double.MAX_VALUE;
+        double x1 = -Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+        for (int i = 0; i < count; i += 2) {
+            x0 = Math.min(x0, points[i]);
+            x1 = Math.max(x1, points[i]);
+            y0 = Math.min(y0, points[i + 1]);
+            y1 = Math.max(y1, points[i + 1]);
+        }
+
+        double newCenterX = (x0 + x1) / 2;
+        double newCenterY = (y0 + y1) / 2;
+        if (tracking) {
+            double displacement = Math.hypot(newCenterX - centerX, newCenterY - centerY);
+            motion = MOTION_SMOOTHING * motion + (1 - MOTION_SMOOTHING) * displacement;
+        }
+        minX = x0;
+        minY = y0;
+        maxX = x1;
+        maxY = y1;
+        centerX = newCenterX;
+        centerY = newCenterY;
+        consecutiveMisses = 0;
+        tracking = true;
+    }
+
+    public synchronized long getRoiHits() {
+        return roiHits;
+    }
+
+    public synchronized long getRoiMisses() {
+        return roiMisses;
+    }
+
+    public synchronized long getFullFrameSearches() {
+        return fullFrameSearches;
+    }
+
+    /** Smoothed displacement of the board centre between detections, in pixels. */
+    public synchronized double getEstimatedMotion() {
+        return motion;
+    }
+
+    public synchronized void resetCounters() {
+        roiHits = 0;
+        roiMisses = 0;
+        fullFrameSearches = 0;
+    }
+}
@@ -0,0 +1,441 @@
+package org.archecker.cameracalibration;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import org.opencv.core.Size;
+
+import android.content.Context;
+import android.util.Log;
+
+/**
+ * Append-only journal of the views captured in the current calibration session, so a session
+ * survives the process being killed. Every captured view is appended as one checksummed
+ * record; all file work runs on a single background thread and appends are synced to disk
+ * in batches of {@link #SYNC_DELAY_MS}. Removing views rewrites the journal with the
+ * remaining ones.
+ * <p>
+ * Format, big endian: a header with magic, version, resolution, board pattern, field size,
+ * corners per view and start time, then per view a tag byte, the capture time, the corner
+ * coordinates and a CRC32 of the record. A torn last record is dropped on resume.
+ */
+class SessionJournal implements CameraCalibrator.ViewJournal {
+    private static final String TAG = "SessionJournal";
+    private static final String FILE_NAME = "session.journal";
+    private static final int MAGIC = 0x43534A4C;
+    private static final int VERSION = 1;
+    static final int HEADER_BYTES = 4 * 8 + 8 + 8;
+    private static final byte TAG_VIEW = 1;
+    private static final long SYNC_DELAY_MS = 500;
+
+    private static SessionJournal sInstance;
+
+    private final File file;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+    private final CRC32 crc = new CRC32();
+    /** Capture times of the journaled views, in view index order. */
+    private final ArrayList<Long> timestamps = new ArrayList<>();
+    private FileOutputStream out;
+    private boolean syncScheduled;
+
+    private SessionJournal(File file) {
+        this.file = file;
+    }
+
+    static synchronized SessionJournal get(Context context) {
+        if (sInstance == null) {
+            sInstance = new SessionJournal(new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+        }
+        return sInstance;
+    }
+
+    /**
+     * Starts a new session with the views the calibrator holds now, usually none. Also used
+     * when the board changes, in which case the held views keep their capture times.
+     */
+    @Override
+    public void start(CameraCalibrator calibrator) {
+        final Header header = new Header(calibrator);
+        final CornerStore views = calibrator.snapshotViews();
+        final long now = System.currentTimeMillis();
+        synchronized (timestamps) {
+            if (timestamps.size() != views.size()) {
+                timestamps.clear();
+                for (int i = 0; i < views.size(); i++) {
+                    timestamps.add(now);
+                }
+            }
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                rewrite(header, views, copyTimestamps());
+            }
+        });
+    }
+
+    /** Journals one captured view, given as interleaved (x, y) pairs. Returns immediately. */
+    @Override
+    public void append(final float[] corners) {
+        final long timestamp = System.currentTimeMillis();
+        synchronized (timestamps) {
+            timestamps.add(timestamp);
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                appendRecord(timestamp, corners);
+            }
+        });
+    }
+
+    /**
+     * Rewrites the journal after views were removed from the session. {@code removedViews} are
+     * the indices passed to {@link CameraCalibrator#removeFrame(int)}, in call order; the
+     * capture times follow the views the same way removeFrame moves them.
+     */
+    void compact(CameraCalibrator calibrator, int[] removedViews) {
+        final Header header = new Header(calibrator);
+        final CornerStore views = calibrator.snapshotViews();
+        synchronized (timestamps) {
+            for (int view : removedViews) {
+                if (view < timestamps.size()) {
+                    int last = timestamps.size() - 1;
+                    timestamps.set(view, timestamps.get(last));
+                    timestamps.remove(last);
+                }
+            }
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                rewrite(header, views, copyTimestamps());
+            }
+        });
+    }
+
+    /**
+     * Restores the journaled views into the calibrator if the journal was written for the same
+     * resolution and board. Waits for queued journal writes first.
+     * @return the number of restored views, 0 if there was nothing to resume
+     */
+    int resume(CameraCalibrator calibrator) {
+        final Header expected = new Header(calibrator);
+        Session session;
+        try {
+            session = executor.submit(new Callable<Session>() {
+                @Override
+                public Session call() {
+                    return read(expected);
+                }
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Resuming the session failed: " + e.getCause());
+            return 0;
+        }
+        if (session == null || session.views.size() == 0) {
+            return 0;
+        }
+        synchronized (timestamps) {
+            timestamps.clear();
+            timestamps.addAll(session.timestamps);
+        }
+        calibrator.restoreViews(session.views);
+        return session.views.size();
+    }
+
+    /**
+     * Reads the journal and reopens it for appending.
+     * @return the journaled session, or null if there is none for the expected header
+     */
+    private Session read(Header expected) {
+        if (!file.exists()) {
+            return null;
+        }
+        long start = System.nanoTime();
+        byte[] data = new byte[(int) file.length()];
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            in.readFully(data);
+        } catch (IOException e) {
+            Log.e(TAG, "Reading " + file + " failed: " + e.getMessage());
+            return null;
+        } finally {
+            closeQuietly(in);
+        }
+
+        Session session = parse(ByteBuffer.wrap(data), expected, crc);
+        if (session == null) {
+            return null;
+        }
+        if (session.torn) {
+            // Drop the damaged tail so later appends follow the last good record.
+            Log.i(TAG, "Dropping a damaged journal tail after " + session.views.size() + " views");
+            rewrite(session.header, session.views, session.timestamps);
+        } else {
+            closeQuietly(out);
+            try {
+                out = new FileOutputStream(file, true);
+            } catch (IOException e) {
+                Log.e(TAG, "Opening " + file + " failed: " + e.getMessage());
+                out = null;
+            }
+        }
+        Log.i(TAG, "Read " + session.views.size() + " journaled views in "
+                + TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) + " us");
+        return session;
+    }
+
+    /**
+     * Parses a journal held in a heap buffer. Records after the first one that is cut short or
+     * fails its checksum are dropped, and the session is marked torn.
+     * @return the session, or null if the data is not a journal for the expected header
+     */
+    static Session parse(ByteBuffer buffer, Header expected, CRC32 crc) {
+        Header header;
+        try {
+            header = Header.readFrom(buffer);
+        } catch (BufferUnderflowException e) {
+            Log.e(TAG, "Journal header is truncated");
+            return null;
+        }
+        if (header == null || !header.matches(expected)) {
+            Log.i(TAG, "Journal belongs to another session, not resuming");
+            return null;
+        }
+
+        CornerStore views = new CornerStore(header.cornersPerView);
+        List<Long> times = new ArrayList<>();
+        float[] corners = new float[header.cornersPerView * 2];
+        int recordBytes = recordBytes(header.cornersPerView);
+        boolean torn = false;
+        while (buffer.hasRemaining()) {
+            if (buffer.remaining() < recordBytes) {
+                torn = true;
+                break;
+            }
+            int recordStart = buffer.position();
+            crc.reset();
+            crc.update(buffer.array(), buffer.arrayOffset() + recordStart, recordBytes - 4);
+            byte tag = buffer.get();
+            long timestamp = buffer.getLong();
+            buffer.asFloatBuffer().get(corners);
+            buffer.position(buffer.position() + corners.length * 4);
+            int checksum = buffer.getInt();
+            if (tag != TAG_VIEW || checksum != (int) crc.getValue()) {
+                torn = true;
+                break;
+            }
+            views.add(corners);
+            times.add(timestamp);
+        }
+        return new Session(header, views, times, torn);
+    }
+
+    /** Writes one view record at the position of a heap buffer. */
+    static void putRecord(ByteBuffer out, long timestamp, float[] corners, CRC32 crc) {
+        int recordStart = out.position();
+        out.put(TAG_VIEW);
+        out.putLong(timestamp);
+        out.asFloatBuffer().put(corners);
+        out.position(out.position() + corners.length * 4);
+        crc.reset();
+        crc.update(out.array(), out.arrayOffset() + recordStart, out.position() - recordStart);
+        out.putInt((int) crc.getValue());
+    }
+
+    /** Runs on the journal thread. */
+    private void appendRecord(long timestamp, float[] corners) {
+        if (out == null) {
+            return;
+        }
+        ByteBuffer record = ByteBuffer.allocate(recordBytes(corners.length / 2));
+        putRecord(record, timestamp, corners, crc);
+        try {
+            out.write(record.array());
+        } catch (IOException e) {
+            Log.e(TAG, "Appending to " + file + " failed: " + e.getMessage());
+            return;
+        }
+        if (!syncScheduled) {
+            syncScheduled = true;
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    sync();
+                }
+            }, SYNC_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** Runs on the journal thread. */
+    private void sync() {
+        syncScheduled = false;
+        if (out == null) {
+            return;
+        }
+        try {
+            out.getFD().sync();
+        } catch (IOException e) {
+            Log.e(TAG, "Syncing " + file + " failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replaces the journal with the given session through a temporary file, then reopens it
+     * for appending. Runs on the journal thread.
+     */
+    private void rewrite(Header header, CornerStore views, List<Long> times) {
+        closeQuietly(out);
+        out = null;
+        syncScheduled = false;
+
+        int recordBytes = recordBytes(header.cornersPerView);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + views.size() * recordBytes);
+        header.writeTo(buffer);
+        float[] corners = new float[header.cornersPerView * 2];
+        for (int i = 0; i < views.size(); i++) {
+            views.get(i, corners);
+            putRecord(buffer, i < times.size() ? times.get(i) : System.currentTimeMillis(), corners, crc);
+        }
+
+        File tmp = new File(file.getPath() + ".tmp");
+        FileOutputStream tmpOut = null;
+        try {
+            tmpOut = new FileOutputStream(tmp);
+            tmpOut.write(buffer.array(), 0, buffer.position());
+            tmpOut.getFD().sync();
+            tmpOut.close();
+            tmpOut = null;
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Renaming " + tmp + " failed");
+            }
+            out = new FileOutputStream(file, true);
+        } catch (IOException e) {
+            Log.e(TAG, "Rewriting " + file + " failed: " + e.getMessage());
+        } finally {
+            closeQuietly(tmpOut);
+        }
+    }
+
+    private List<Long> copyTimestamps() {
+        synchronized (timestamps) {
+            return new ArrayList<>(timestamps);
+        }
+    }
+
+    static int recordBytes(int cornersPerView) {
+        return 1 + 8 + cornersPerView * 2 * 4 + 4;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    static final class Session {
+        final Header header;
+        final CornerStore views;
+        final List<Long> timestamps;
+        /** A damaged tail was dropped. */
+        final boolean torn;
+
+        Session(Header header, CornerStore views, List<Long> timestamps, boolean torn) {
+            this.header = header;
+            this.views = views;
+            this.timestamps = timestamps;
+            this.torn = torn;
+        }
+    }
+
+    static final class Header {
+        final int width;
+        final int height;
+        final int cols;
+        final int rows;
+        final int layout;
+        final double fieldSize;
+        final int cornersPerView;
+        final long created;
+
+        Header(CameraCalibrator calibrator) {
+            this(calibrator.getImageSize(), calibrator.getBoard(), System.currentTimeMillis());
+        }
+
+        private Header(Size imageSize, BoardModel board, long created) {
+            this((int) imageSize.width, (int) imageSize.height, (int) board.getPatternSize().width,
+                    (int) board.getPatternSize().height, board.getLayout().ordinal(), board.getFieldSize(),
+                    board.getCornerCount(), created);
+        }
+
+        Header(int width, int height, int cols, int rows, int layout, double fieldSize,
+               int cornersPerView, long created) {
+            this.width = width;
+            this.height = height;
+            this.cols = cols;
+            this.rows = rows;
+            this.layout = layout;
+            this.fieldSize = fieldSize;
+            this.cornersPerView = cornersPerView;
+            this.created = created;
+        }
+
+        boolean matches(Header other) {
+            return width == other.width && height == other.height && cols == other.cols
+                    && rows == other.rows && layout == other.layout && fieldSize == other.fieldSize
+                    && cornersPerView == other.cornersPerView;
+        }
+
+        void writeTo(ByteBuffer out) {
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putInt(width);
+            out.putInt(height);
+            out.putInt(cols);
+            out.putInt(rows);
+            out.putInt(layout);
+            out.putInt(cornersPerView);
+            out.putDouble(fieldSize);
+            out.putLong(created);
+        }
+
+        /** @return the header, or null if the data is not a journal of this version */
+        static Header readFrom(ByteBuffer in) {
+            if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+                return null;
+            }
+            int width = in.getInt();
+            int height = in.getInt();
+            int cols = in.getInt();
+            int rows = in.getInt();
+            int layout = in.getInt();
+            int cornersPerView = in.getInt();
+            double fieldSize = in.getDouble();
+            long created = in.getLong();
+            return new Header(width, height, cols, rows, layout, fieldSize, cornersPerView, created);
+        }
+    }
+}
@@ -100,11 +100,10 @@ public class GuideMode {
                         }
                     });
 
-                    if(!calibrator.checkLastFrame()) {
-                        calibrator.addCorners();
+                    if(!calibrator.checkLastFrame() && calibrator.addCorners()) {
                         cameraCalibrationActivity.picAddedMessage(calibrator.getCornersBufferSize());
 
-                        calibrator.calibrate();
+                        cameraCalibrationActivity.requestCalibration(calibrator);
                         try {
                             Thread.sleep(500);
                         } catch (InterruptedException e) {
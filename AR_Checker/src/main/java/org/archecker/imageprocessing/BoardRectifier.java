@@ -0,0 +1,173 @@
+package org.archecker.imageprocessing;
+
+import org.opencv.calib3d.Calib3d;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Produces a fronto-parallel view of the chessboard from the detected corners.
+ * Updating the corners is cheap: the homography and the remap tables are rebuilt only
+ * when a consumer asks for the rectified board and the board has moved by more than
+ * the threshold since the tables were built. No screen shows the rectified board yet;
+ * {@link org.archecker.cameracalibration.CameraCalibrator#getBoardRectifier()} is the hook for one.
+ */
+public class BoardRectifier {
+    public static final int DEFAULT_CELL_SIZE = 40;
+    public static final double DEFAULT_MOVE_THRESHOLD = 2.0;
+
+    private final Size patternSize;
+    private final int cellSize;
+    private final double moveThreshold;
+    private final Size outputSize;
+    private final MatOfPoint2f idealCorners = new MatOfPoint2f();
+
+    private final MatOfPoint2f corners = new MatOfPoint2f();
+    private final MatOfPoint2f warpedCorners = new MatOfPoint2f();
+    private float[] cornerValues = new float[0];
+    private float[] warpedValues = new float[0];
+    private boolean hasCorners = false;
+    private boolean hasMaps = false;
+
+    private final Mat homography = new Mat();
+    private final Mat grid = new Mat();
+    private final Mat floatMap = new Mat();
+    private final Mat noMap = new Mat();
+    private final Mat map1 = new Mat();
+    private final Mat map2 = new Mat();
+
+    private long warpsBuilt;
+
+    public BoardRectifier(Size patternSize) {
+        this(patternSize, DEFAULT_CELL_SIZE, DEFAULT_MOVE_THRESHOLD);
+    }
+
+    public BoardRectifier(Size patternSize, int cellSize, double moveThreshold) {
+        this.patternSize = patternSize;
+        this.cellSize = cellSize;
+        this.moveThreshold = moveThreshold;
+        int cols = (int) patternSize.width;
+        int rows = (int) patternSize.height;
+        // One extra cell around the inner corners so the outer fields are visible.
+        outputSize = new Size((cols + 1) * cellSize, (rows + 1) * cellSize);
+
+        float[] ideal = new float[cols * rows * 2];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                ideal[(i * cols + j) * 2] = (j + 1) * cellSize;
+                ideal[(i * cols + j) * 2 + 1] = (i + 1) * cellSize;
+            }
+        }
+        idealCorners.create(cols * rows, 1, CvType.CV_32FC2);
+        idealCorners.put(0, 0, ideal);
+    }
+
+    /**
+     * Records the latest detected corners. Nothing is computed here.
+     */
+    public synchronized void update(MatOfPoint2f detectedCorners) {
+        if (detectedCorners.total() != patternSize.width * patternSize.height) {
+            return;
+        }
+        detectedCorners.copyTo(corners);
+        hasCorners = true;
+    }
+
+    public synchronized void invalidate() {
+        hasCorners = false;
+        hasMaps = false;
+    }
+
+    /**
+     * Warps the board region of the frame into rectified. Returns false if no board has been seen yet.
+     */
+    public synchronized boolean rectify(Mat frame, Mat rectified) {
+        if (!hasCorners) {
+            return false;
+        }
+        if (!hasMaps || boardMoved()) {
+            buildMaps();
+        }
+        Imgproc.remap(frame, rectified, map1, map2, Imgproc.INTER_LINEAR);
+        return true;
+    }
+
+    public synchronized Mat getHomography() {
+        return homography;
+    }
+
+    public Size getOutputSize() {
+        return outputSize;
+    }
+
+    /** Number of times the homography and remap tables had to be rebuilt. */
+    public synchronized long getWarpsBuilt() {
+        return warpsBuilt;
+    }
+
+    private boolean boardMoved() {
+        int count = (int) corners.total() * 2;
+        if (cornerValues.length != count) {
+            cornerValues = new float[count];
+        }
+        corners.get(0, 0, cornerValues);
+        double threshold = moveThreshold * moveThreshold;
+        for (int i = 0; i < count; i += 2) {
+            double dx = cornerValues[i] - warpedValues[i];
+            double dy = cornerValues[i + 1] - warpedValues[i + 1];
+            if (dx * dx + dy * dy > threshold) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void buildMaps() {
+        corners.copyTo(warpedCorners);
+        int count = (int) warpedCorners.total() * 2;
+        if (warpedValues.length != count) {
+            warpedValues = new float[count];
+        }
+        warpedCorners.get(0, 0, warpedValues);
+
+        // Maps rectified pixels back into the camera frame, which is what remap needs.
+        Mat h = Calib3d.findHomography(idealCorners, warpedCorners);
+        h.copyTo(homography);
+        h.release();
+
+        if (grid.empty()) {
+            int width = (int) outputSize.width;
+            int height = (int) outputSize.height;
+            float[] row = new float[width * 2];
+            grid.create(height, width, CvType.CV_32FC2);
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    row[x * 2] = x;
+                    row[x * 2 + 1] = y;
+                }
+                grid.put(y, 0, row);
+            }
+        }
+        Core.perspectiveTransform(grid, floatMap, homography);
+        Imgproc.convertMaps(floatMap, noMap, map1, map2, CvType.CV_16SC2);
+        hasMaps = true;
+        warpsBuilt++;
+    }
+
+    public synchronized void release() {
+        idealCorners.release();
+        corners.release();
+        warpedCorners.release();
+        homography.release();
+        grid.release();
+        floatMap.release();
+        noMap.release();
+        map1.release();
+        map2.release();
+        hasCorners = false;
+        hasMaps = false;
+    }
+}
@@ -0,0 +1,169 @@
+package org.archecker.imageprocessing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+/**
+ * Recycles native Mats by (rows, cols, type), so per-frame work stops allocating native
+ * memory once the pool has warmed up. Mats are borrowed through a {@link Scope}, which
+ * returns all of them when closed:
+ * <pre>
+ * try (MatPool.Scope scope = MatPool.getDefault().open()) {
+ *     Mat rotation = scope.acquire(3, 3, CvType.CV_64F);
+ *     ...
+ * }
+ * </pre>
+ * A borrowed Mat must not be used after its scope is closed. If its shape was changed while
+ * borrowed it is released instead of pooled.
+ */
+public class MatPool {
+    public static final int DEFAULT_MAX_IDLE_PER_SHAPE = 4;
+    private static final MatPool DEFAULT = new MatPool(DEFAULT_MAX_IDLE_PER_SHAPE);
+
+    private final int maxIdlePerShape;
+    private final HashMap<Long, ArrayDeque<Mat>> idle = new HashMap<>();
+
+    private long hits;
+    private long misses;
+    private int liveCount;
+    private long liveBytes;
+    private long idleBytes;
+
+    public MatPool(int maxIdlePerShape) {
+        this.maxIdlePerShape = maxIdlePerShape;
+    }
+
+    /** Pool shared by the frame renderers and the calibrator. */
+    public static MatPool getDefault() {
+        return DEFAULT;
+    }
+
+    public Scope open() {
+        return new Scope();
+    }
+
+    private synchronized Mat acquire(int rows, int cols, int type) {
+        ArrayDeque<Mat> mats = idle.get(key(rows, cols, type));
+        Mat mat = mats != null ? mats.pollLast() : null;
+        long bytes = bytes(rows, cols, type);
+        if (mat != null) {
+            hits++;
+            idleBytes -= bytes;
+        } else {
+            misses++;
+            mat = new Mat(rows, cols, type);
+        }
+        liveCount++;
+        liveBytes += bytes;
+        return mat;
+    }
+
+    private synchronized void release(Mat mat, int rows, int cols, int type) {
+        long bytes = bytes(rows, cols, type);
+        liveCount--;
+        liveBytes -= bytes;
+        if (mat.rows() != rows || mat.cols() != cols || mat.type() != type || mat.isSubmatrix()) {
+            mat.release();
+            return;
+        }
+        Long key = key(rows, cols, type);
+        ArrayDeque<Mat> mats = idle.get(key);
+        if (mats == null) {
+            mats = new ArrayDeque<>(maxIdlePerShape);
+            idle.put(key, mats);
+        }
+        if (mats.size() < maxIdlePerShape) {
+            mats.addLast(mat);
+            idleBytes += bytes;
+        } else {
+            mat.release();
+        }
+    }
+
+    /** Releases the native memory of all idle Mats. Borrowed Mats are not affected. */
+    public synchronized void trim() {
+        for (ArrayDeque<Mat> mats : idle.values()) {
+            for (Mat mat : mats) {
+                mat.release();
+            }
+        }
+        idle.clear();
+        idleBytes = 0;
+    }
+
+    public synchronized double getHitRate() {
+        long requests = hits + misses;
+        return requests > 0 ? (double) hits / requests : 0;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /** Mats currently borrowed. */
+    public synchronized int getLiveCount() {
+        return liveCount;
+    }
+
+    public synchronized long getLiveBytes() {
+        return liveBytes;
+    }
+
+    /** Bytes held by idle Mats waiting to be reused. */
+    public synchronized long getIdleBytes() {
+        return idleBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("Mat pool: hit rate %.2f, live %d (%d bytes), idle %d bytes",
+                getHitRate(), liveCount, liveBytes, idleBytes);
+    }
+
+    private static Long key(int rows, int cols, int type) {
+        return ((long) rows << 40) | ((long) cols << 16) | type;
+    }
+
+    private static long bytes(int rows, int cols, int type) {
+        return (long) rows * cols * CvType.ELEM_SIZE(type);
+    }
+
+    /**
+     * Mats borrowed together and returned together. Not thread-safe, a scope belongs to the
+     * thread that opened it.
+     */
+    public final class Scope implements AutoCloseable {
+        private final List<Mat> mats = new ArrayList<>(4);
+        private final List<int[]> shapes = new ArrayList<>(4);
+
+        private Scope() {
+        }
+
+        /** A Mat of the given shape. Its content is undefined. */
+        public Mat acquire(int rows, int cols, int type) {
+            Mat mat = MatPool.this.acquire(rows, cols, type);
+            mats.add(mat);
+            shapes.add(new int[]{rows, cols, type});
+            return mat;
+        }
+
+        @Override
+        public void close() {
+            for (int i = 0; i < mats.size(); i++) {
+                int[] shape = shapes.get(i);
+                MatPool.this.release(mats.get(i), shape[0], shape[1], shape[2]);
+            }
+            mats.clear();
+            shapes.clear();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.archecker.imageprocessing;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Undistortion by remap tables instead of Imgproc.undistort, which rebuilds the tables on
+ * every call. The tables are built once per calibration and resolution, in the fixed-point
+ * CV_16SC2 format, and reused until {@link #isValid(int, Size)} reports a different key.
+ */
+public class UndistortionMaps {
+    private final Mat noRotation = new Mat();
+    private final Mat map1 = new Mat();
+    private final Mat map2 = new Mat();
+    private Mat partMap1;
+    private Mat partMap2;
+    private int partFrom;
+    private int partTo;
+    private Size size;
+    private int version;
+    private boolean hasMaps = false;
+
+    private long mapsBuilt;
+
+    /**
+     * @param version calibration the tables have to match, see
+     *                {@link org.archecker.cameracalibration.CameraCalibrator#getCalibrationVersion()}
+     */
+    public boolean isValid(int version, Size size) {
+        return hasMaps && this.version == version && this.size.equals(size);
+    }
+
+    public void build(Mat cameraMatrix, Mat distortionCoefficients, Size size, int version) {
+        Imgproc.initUndistortRectifyMap(cameraMatrix, distortionCoefficients, noRotation, cameraMatrix, size,
+                CvType.CV_16SC2, map1, map2);
+        this.size = size.clone();
+        this.version = version;
+        hasMaps = true;
+        releasePart();
+        mapsBuilt++;
+    }
+
+    /**
+     * Undistorts the whole frame. {@code dst} is reallocated only if its size or type differs.
+     */
+    public void remap(Mat src, Mat dst) {
+        Imgproc.remap(src, dst, map1, map2, Imgproc.INTER_LINEAR);
+    }
+
+    /**
+     * Undistorts only the output columns [fromCol, toCol) into {@code dst}, which is
+     * (toCol - fromCol) columns wide. The headers over the table columns are kept while the
+     * range stays the same.
+     */
+    public void remap(Mat src, Mat dst, int fromCol, int toCol) {
+        if (partMap1 == null || partFrom != fromCol || partTo != toCol) {
+            releasePart();
+            partMap1 = map1.colRange(fromCol, toCol);
+            partMap2 = map2.colRange(fromCol, toCol);
+            partFrom = fromCol;
+            partTo = toCol;
+        }
+        Imgproc.remap(src, dst, partMap1, partMap2, Imgproc.INTER_LINEAR);
+    }
+
+    private void releasePart() {
+        if (partMap1 != null) {
+            partMap1.release();
+            partMap2.release();
+            partMap1 = null;
+            partMap2 = null;
+        }
+    }
+
+    public long getMapsBuilt() {
+        return mapsBuilt;
+    }
+
+    public void invalidate() {
+        hasMaps = false;
+    }
+
+    public void release() {
+        hasMaps = false;
+        releasePart();
+        noRotation.release();
+        map1.release();
+        map2.release();
+    }
+}
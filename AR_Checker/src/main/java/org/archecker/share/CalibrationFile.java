@@ -0,0 +1,96 @@
+package org.archecker.share;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import android.util.Log;
+
+/**
+ * A camera_para file in the calibs folder and what is known about it. The native side names
+ * the files camera_para-&lt;device&gt;-&lt;camera index&gt;-&lt;width&gt;x&lt;height&gt;[-&lt;focal length&gt;].dat;
+ * the resolution is taken from the file header, which is authoritative.
+ */
+class CalibrationFile {
+    private static final String TAG = "CalibrationFile";
+    private static final Pattern NAME = Pattern.compile("camera_para-(.*)-(\\d+)-(\\d+)x(\\d+)(-[\\d.]+)?\\.dat");
+    private static final int MAX_SIZE = 16384;
+
+    final File file;
+    final long length;
+    final long lastModified;
+    /** Manufacturer, model and board as the native side wrote them, or the file name. */
+    final String device;
+    /** -1 if not known. */
+    final int cameraIndex;
+    final int width;
+    final int height;
+    /** RMS reprojection error in pixels, NaN if not known. */
+    final double rms;
+
+    private CalibrationFile(File file, long length, long lastModified, String device, int cameraIndex,
+                            int width, int height, double rms) {
+        this.file = file;
+        this.length = length;
+        this.lastModified = lastModified;
+        this.device = device;
+        this.cameraIndex = cameraIndex;
+        this.width = width;
+        this.height = height;
+        this.rms = rms;
+    }
+
+    /** True while the file on disk is the one this was parsed from. */
+    boolean isCurrent(File file) {
+        return file.length() == length && file.lastModified() == lastModified;
+    }
+
+    static CalibrationFile parse(File file, RmsLookup lookup) {
+        long length = file.length();
+        long lastModified = file.lastModified();
+        String device = file.getName();
+        int cameraIndex = -1;
+        int width = 0;
+        int height = 0;
+
+        Matcher matcher = NAME.matcher(file.getName());
+        if (matcher.matches()) {
+            device = matcher.group(1).replace('_', ' ');
+            cameraIndex = Integer.parseInt(matcher.group(2));
+            width = Integer.parseInt(matcher.group(3));
+            height = Integer.parseInt(matcher.group(4));
+        }
+
+        // ARParam files start with the big endian image size.
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            int xsize = in.readInt();
+            int ysize = in.readInt();
+            if (xsize > 0 && xsize <= MAX_SIZE && ysize > 0 && ysize <= MAX_SIZE) {
+                width = xsize;
+                height = ysize;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Reading " + file + " failed: " + e.getMessage());
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+
+        double rms = cameraIndex < 0 ? Double.NaN : lookup.findRms(cameraIndex, width, height, lastModified);
+        return new CalibrationFile(file, length, lastModified, device, cameraIndex, width, height, rms);
+    }
+
+    interface RmsLookup {
+        double findRms(int cameraIndex, int width, int height, long time);
+    }
+}
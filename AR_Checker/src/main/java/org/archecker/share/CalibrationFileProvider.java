@@ -0,0 +1,157 @@
+package org.archecker.share;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import android.content.ContentProvider;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
+import android.provider.OpenableColumns;
+import androidx.core.content.FileProvider;
+import android.util.Log;
+
+/**
+ * The app's {@link FileProvider}, which also serves several calibration files as one ZIP.
+ * Export URIs name the files as query parameters; the archive is written into a pipe while the
+ * receiving app reads it, so no copy of it is ever stored.
+ */
+public class CalibrationFileProvider extends FileProvider
+        implements ContentProvider.PipeDataWriter<List<File>> {
+    private static final String TAG = "CalibrationFileProvider";
+    static final String AUTHORITY = "org.artoolkitx.arx.fileprovider";
+    static final String ZIP_TYPE = "application/zip";
+    private static final String EXPORT_PATH = "export";
+    private static final String ZIP_NAME = "calibrations.zip";
+    private static final String PARAM_FILE = "file";
+
+    /** A URI streaming the files, all from the calibs folder, as one ZIP. */
+    static Uri getZipUri(List<CalibrationFile> calibrations) {
+        Uri.Builder builder = new Uri.Builder()
+                .scheme("content")
+                .authority(AUTHORITY)
+                .appendPath(EXPORT_PATH)
+                .appendPath(ZIP_NAME);
+        for (CalibrationFile calibration : calibrations) {
+            builder.appendQueryParameter(PARAM_FILE, calibration.file.getName());
+        }
+        return builder.build();
+    }
+
+    private static boolean isExport(Uri uri) {
+        List<String> segments = uri.getPathSegments();
+        return segments.size() == 2 && EXPORT_PATH.equals(segments.get(0));
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return isExport(uri) ? ZIP_TYPE : super.getType(uri);
+    }
+
+    /** The size of a streamed archive isn't known up front, so only the name is reported. */
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                        String sortOrder) {
+        if (!isExport(uri)) {
+            return super.query(uri, projection, selection, selectionArgs, sortOrder);
+        }
+        if (projection == null) {
+            projection = new String[]{OpenableColumns.DISPLAY_NAME, OpenableColumns.SIZE};
+        }
+        List<String> columns = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        for (String column : projection) {
+            if (OpenableColumns.DISPLAY_NAME.equals(column)) {
+                columns.add(column);
+                values.add(uri.getLastPathSegment());
+            } else if (OpenableColumns.SIZE.equals(column)) {
+                columns.add(column);
+                values.add(null);
+            }
+        }
+        MatrixCursor cursor = new MatrixCursor(columns.toArray(new String[columns.size()]), 1);
+        cursor.addRow(values);
+        return cursor;
+    }
+
+    @Override
+    public ParcelFileDescriptor openFile(Uri uri, String mode) throws FileNotFoundException {
+        if (!isExport(uri)) {
+            return super.openFile(uri, mode);
+        }
+        if (!"r".equals(mode)) {
+            throw new FileNotFoundException("Export " + uri + " is read only");
+        }
+        return openPipeHelper(uri, ZIP_TYPE, null, resolve(uri), this);
+    }
+
+    private List<File> resolve(Uri uri) throws FileNotFoundException {
+        File directory = CalibrationIndex.getDirectory(getContext());
+        List<String> names = uri.getQueryParameters(PARAM_FILE);
+        if (names.isEmpty()) {
+            throw new FileNotFoundException("Export " + uri + " names no files");
+        }
+        List<File> files = new ArrayList<>(names.size());
+        for (String name : names) {
+            // Names only, so nothing outside the calibs folder can be exported.
+            if (name.isEmpty() || name.indexOf(File.separatorChar) >= 0 || name.startsWith(".")) {
+                throw new FileNotFoundException("Invalid calibration file name " + name);
+            }
+            File file = new File(directory, name);
+            if (!file.isFile()) {
+                throw new FileNotFoundException(file + " doesn't exist");
+            }
+            files.add(file);
+        }
+        return files;
+    }
+
+    /** Runs on a background thread, for as long as the receiver keeps reading. */
+    @Override
+    public void writeDataToPipe(ParcelFileDescriptor output, Uri uri, String mimeType, Bundle opts,
+                                List<File> files) {
+        ZipOutputStream zip = new ZipOutputStream(
+                new BufferedOutputStream(new FileOutputStream(output.getFileDescriptor())));
+        byte[] buffer = new byte[8192];
+        try {
+            for (File file : files) {
+                ZipEntry entry = new ZipEntry(file.getName());
+                entry.setTime(file.lastModified());
+                zip.putNextEntry(entry);
+                FileInputStream in = new FileInputStream(file);
+                try {
+                    int read;
+                    while ((read = in.read(buffer)) != -1) {
+                        zip.write(buffer, 0, read);
+                    }
+                } finally {
+                    in.close();
+                }
+                zip.closeEntry();
+            }
+            zip.finish();
+            zip.flush();
+            Log.i(TAG, "Exported " + files.size() + " calibration files");
+        } catch (IOException e) {
+            Log.e(TAG, "Exporting " + uri + " failed: " + e.getMessage());
+        } finally {
+            // Ends the Deflater's native memory. The stream doesn't own the descriptor, the
+            // pipe itself is closed by openPipeHelper.
+            try {
+                zip.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
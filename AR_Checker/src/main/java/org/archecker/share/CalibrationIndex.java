@@ -0,0 +1,148 @@
+package org.archecker.share;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.archecker.cameracalibration.CalibrationStore;
+
+/**
+ * The calibration files in cacheDir/calibs, newest first. Listing, parsing and deleting run on
+ * a background thread and results are delivered on the main thread. A file is parsed once and
+ * its metadata kept for as long as its size and modification time stay the same.
+ */
+class CalibrationIndex {
+    private static final String TAG = "CalibrationIndex";
+    private static final String DIRECTORY = "calibs";
+    /** The parameter file is written right after the calibration is stored. */
+    private static final long SAVE_TOLERANCE_MILLIS = 60 * 1000;
+
+    interface Listener {
+        void onCalibrationsIndexed(List<CalibrationFile> calibrations);
+    }
+
+    private static CalibrationIndex sInstance;
+
+    private final Context context;
+    private final File directory;
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Only touched on the worker thread.
+    private final Map<String, CalibrationFile> parsed = new HashMap<>();
+
+    private CalibrationIndex(Context context) {
+        this.context = context;
+        this.directory = getDirectory(context);
+    }
+
+    static synchronized CalibrationIndex get(Context context) {
+        if (sInstance == null) {
+            sInstance = new CalibrationIndex(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    static File getDirectory(Context context) {
+        return new File(context.getCacheDir(), DIRECTORY);
+    }
+
+    /** Lists the folder again, parsing only files that are new or changed. */
+    void refresh(final Listener listener) {
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                deliver(listener, scan());
+            }
+        });
+    }
+
+    /** Deletes the files, then lists the folder again. */
+    void delete(final List<CalibrationFile> calibrations, final Listener listener) {
+        worker.execute(new Runnable() {
+            @Override
+            public void run() {
+                for (CalibrationFile calibration : calibrations) {
+                    if (!calibration.file.delete() && calibration.file.exists()) {
+                        Log.e(TAG, "Deleting " + calibration.file + " failed");
+                    }
+                }
+                Log.i(TAG, "Deleted " + calibrations.size() + " calibration files");
+                deliver(listener, scan());
+            }
+        });
+    }
+
+    private void deliver(final Listener listener, final List<CalibrationFile> calibrations) {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                listener.onCalibrationsIndexed(calibrations);
+            }
+        });
+    }
+
+    private List<CalibrationFile> scan() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            parsed.clear();
+            return Collections.emptyList();
+        }
+
+        CalibrationFile.RmsLookup lookup = new CalibrationFile.RmsLookup() {
+            private CalibrationStore store;
+
+            @Override
+            public double findRms(int cameraIndex, int width, int height, long time) {
+                if (store == null) {
+                    store = CalibrationStore.get(context);
+                }
+                return store.findRms(cameraIndex, width, height, time, SAVE_TOLERANCE_MILLIS);
+            }
+        };
+
+        Map<String, CalibrationFile> current = new HashMap<>(files.length);
+        int parsedCount = 0;
+        for (File file : files) {
+            if (!file.isFile()) {
+                continue;
+            }
+            CalibrationFile calibration = parsed.get(file.getName());
+            if (calibration == null || !calibration.isCurrent(file)) {
+                calibration = CalibrationFile.parse(file, lookup);
+                parsedCount++;
+            }
+            current.put(file.getName(), calibration);
+        }
+        parsed.clear();
+        parsed.putAll(current);
+        Log.d(TAG, current.size() + " calibration files, " + parsedCount + " parsed");
+
+        List<CalibrationFile> calibrations = new ArrayList<>(current.values());
+        Collections.sort(calibrations, new Comparator<CalibrationFile>() {
+            @Override
+            public int compare(CalibrationFile a, CalibrationFile b) {
+                return a.lastModified < b.lastModified ? 1 : (a.lastModified == b.lastModified ? 0 : -1);
+            }
+        });
+        return calibrations;
+    }
+}
@@ -5,61 +5,103 @@ import android.net.Uri;
 import android.os.Bundle;
 import android.app.Activity;
 import androidx.core.content.FileProvider;
-import android.util.Log;
+import android.util.SparseBooleanArray;
 import android.view.View;
-import android.widget.AdapterView;
 import android.widget.ImageButton;
 import android.widget.ListView;
+import android.widget.Toast;
 
 import org.archecker.R;
-import java.io.File;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.List;
 
-public class ShareActivity extends Activity implements AdapterView.OnItemClickListener, View.OnClickListener {
+/**
+ * Lists the calibration files for sharing. Tapping selects; a single selected file is shared
+ * as it is, several are streamed as one ZIP by {@link CalibrationFileProvider}. The listing
+ * and deletions run in the background through {@link CalibrationIndex}.
+ */
+public class ShareActivity extends Activity implements View.OnClickListener, CalibrationIndex.Listener {
 
-    private static final String TAG = ShareActivity.class.getSimpleName();
     private ShareAdapter shareAdapter;
-    private ArrayList<File> calibsList;
+    private final ArrayList<CalibrationFile> calibsList = new ArrayList<>();
+    private CalibrationIndex calibrationIndex;
+    private ListView calibrationsListView;
+    private ImageButton shareButton;
     private ImageButton deleteButton;
 
-    @Override
-    public void onItemClick(AdapterView<?> parent, View view, int position, long id) {
-        File selectedFile = calibsList.get(position);
-        Uri contentUri = FileProvider.getUriForFile(this, "org.artoolkitx.arx.fileprovider", selectedFile);
-        Intent sharingIntent = new Intent(Intent.ACTION_SEND);
-        sharingIntent.setType("application/octet-stream");
-        sharingIntent.putExtra(Intent.EXTRA_STREAM,contentUri);
-        startActivity(Intent.createChooser(sharingIntent,getResources().getString(R.string.share_text)));
-    }
-
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_share);
-        ListView calibrationsListView = (ListView) findViewById(R.id.shareList);
-        File calibsFile = new File(this.getCacheDir().getAbsolutePath()+"/calibs");
-        Log.d(TAG,"calibsFile: " + calibsFile.toString());
-        calibsList = new ArrayList<>(Arrays.asList(calibsFile.listFiles()));
+        calibrationsListView = (ListView) findViewById(R.id.shareList);
         shareAdapter = new ShareAdapter(this,
                 calibsList);
         calibrationsListView.setAdapter(shareAdapter);
-        calibrationsListView.setOnItemClickListener(this);
+        shareButton = (ImageButton) findViewById(R.id.button_shareExport);
+        shareButton.setOnClickListener(this);
         deleteButton = (ImageButton) findViewById(R.id.button_shareDelete);
         deleteButton.setOnClickListener(this);
+
+        calibrationIndex = CalibrationIndex.get(this);
+        updateButtons(false);
+        calibrationIndex.refresh(this);
     }
 
+    @Override
+    public void onCalibrationsIndexed(List<CalibrationFile> calibrations) {
+        if (isDestroyed()) {
+            return;
+        }
+        calibrationsListView.clearChoices();
+        calibsList.clear();
+        calibsList.addAll(calibrations);
+        shareAdapter.notifyDataSetChanged();
+        updateButtons(true);
+    }
 
     @Override
     public void onClick(View v) {
-        ArrayList<File> filesToRemove = new ArrayList<>();
-        if(v== deleteButton){
-            for (File file: calibsList){
-                file.delete();
-                filesToRemove.add(file);
+        List<CalibrationFile> selected = getSelected();
+        if (v == shareButton) {
+            share(selected);
+        } else if (v == deleteButton) {
+            updateButtons(false);
+            calibrationIndex.delete(selected.isEmpty() ? new ArrayList<>(calibsList) : selected, this);
+        }
+    }
+
+    private void share(List<CalibrationFile> selected) {
+        if (selected.isEmpty()) {
+            Toast.makeText(this, R.string.error_no_calibration_selected, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        Intent sharingIntent = new Intent(Intent.ACTION_SEND);
+        Uri contentUri;
+        if (selected.size() == 1) {
+            contentUri = FileProvider.getUriForFile(this, CalibrationFileProvider.AUTHORITY, selected.get(0).file);
+            sharingIntent.setType("application/octet-stream");
+        } else {
+            contentUri = CalibrationFileProvider.getZipUri(selected);
+            sharingIntent.setType(CalibrationFileProvider.ZIP_TYPE);
+        }
+        sharingIntent.putExtra(Intent.EXTRA_STREAM,contentUri);
+        sharingIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        startActivity(Intent.createChooser(sharingIntent,getResources().getString(R.string.share_text)));
+    }
+
+    private List<CalibrationFile> getSelected() {
+        List<CalibrationFile> selected = new ArrayList<>();
+        SparseBooleanArray checked = calibrationsListView.getCheckedItemPositions();
+        for (int i = 0; checked != null && i < checked.size(); i++) {
+            if (checked.valueAt(i) && checked.keyAt(i) < calibsList.size()) {
+                selected.add(calibsList.get(checked.keyAt(i)));
             }
-            calibsList.removeAll(filesToRemove);
         }
-        shareAdapter.notifyDataSetChanged();
+        return selected;
+    }
+
+    private void updateButtons(boolean enabled) {
+        shareButton.setEnabled(enabled && !calibsList.isEmpty());
+        deleteButton.setEnabled(enabled && !calibsList.isEmpty());
     }
 }
@@ -1,5 +1,6 @@
 package org.archecker.share;
 
+import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -8,17 +9,19 @@ import android.widget.TextView;
 
 import org.archecker.R;
 
-import java.io.File;
+import java.text.DateFormat;
 import java.util.ArrayList;
+import java.util.Date;
 
-class ShareAdapter extends ArrayAdapter<File> {
+class ShareAdapter extends ArrayAdapter<CalibrationFile> {
     private final int menuResource;
-    private final ArrayList<File> cachedFiles;
+    private final ArrayList<CalibrationFile> calibrations;
+    private final DateFormat dateFormat = DateFormat.getDateTimeInstance(DateFormat.SHORT, DateFormat.SHORT);
 
-    public ShareAdapter(ShareActivity shareActivity, ArrayList<File> cacheFiles) {
-        super(shareActivity,R.layout.share_list_item,cacheFiles);
+    public ShareAdapter(ShareActivity shareActivity, ArrayList<CalibrationFile> calibrations) {
+        super(shareActivity,R.layout.share_list_item,calibrations);
         this.menuResource = R.layout.share_list_item;
-        this.cachedFiles = cacheFiles;
+        this.calibrations = calibrations;
     }
 
     @Override
@@ -33,10 +36,23 @@ class ShareAdapter extends ArrayAdapter<File> {
         else{
             viewHolder = (ViewHolder) convertView.getTag();
         }
-        String calibFileText = cachedFiles.get(position).getName();
-        viewHolder.shareItemTextView.setText(calibFileText);
+        viewHolder.shareItemTextView.setText(describe(parent.getContext(), calibrations.get(position)));
         return convertView;
     }
+
+    private String describe(Context context, CalibrationFile calibration) {
+        String date = dateFormat.format(new Date(calibration.lastModified));
+        if (calibration.cameraIndex < 0) {
+            return calibration.device;
+        }
+        if (Double.isNaN(calibration.rms)) {
+            return context.getString(R.string.share_item_details, calibration.device, calibration.cameraIndex,
+                    calibration.width, calibration.height, date);
+        }
+        return context.getString(R.string.share_item_details_error, calibration.device, calibration.cameraIndex,
+                calibration.width, calibration.height, date, calibration.rms);
+    }
+
     private static class ViewHolder{
         TextView shareItemTextView;
     }
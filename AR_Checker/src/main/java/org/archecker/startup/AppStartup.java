@@ -0,0 +1,316 @@
+package org.archecker.startup;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Trace;
+import android.util.Log;
+
+import org.archecker.cameracalibration.CalibrationStore;
+import org.artoolkit.ar.base.assets.AssetCache;
+import org.artoolkit.ar.base.assets.AssetHelper;
+import org.opencv.android.StaticHelper;
+
+/**
+ * Initialises the app's subsystems off the main thread, as soon as the process starts. Each
+ * subsystem runs once the ones it depends on are ready, so independent ones load in parallel,
+ * and each has a future that completes when it is ready. A subsystem whose dependency failed
+ * fails as well. Timings go to the {@link StartupTrace} and show up as systrace sections.
+ */
+public class AppStartup {
+    private static final String TAG = "AppStartup";
+    private static final String ASSET_FOLDER = "Data";
+
+    /** The C++ runtime shared by the native libraries. */
+    public static final String CPP_RUNTIME = "cppRuntime";
+    /** The OpenCV native libraries; no Mat may be created before. */
+    public static final String OPENCV = "openCV";
+    /** The native calibration uploader, needed by CameraCalibrationActivity.nativeSaveParam. */
+    public static final String UPLOAD_NATIVE = "uploadNative";
+    /** The asset folder copied to the cache directory, where ARToolKit reads it. */
+    public static final String ASSETS = "assets";
+    /** The stored calibrations, loaded from disk. */
+    public static final String CALIBRATION_STORE = "calibrationStore";
+    /** Trace mark of the first camera frame shown. */
+    public static final String FIRST_PREVIEW_FRAME = "firstPreviewFrame";
+
+    public interface Listener {
+        void onReady(String subsystem);
+
+        void onFailed(String subsystem, Throwable cause);
+    }
+
+    private static AppStartup sInstance;
+
+    private final Context context;
+    private final StartupTrace trace = new StartupTrace();
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor executor;
+    private volatile AssetCache assetCache;
+
+    private AppStartup(Context context) {
+        this.context = context;
+        add(CPP_RUNTIME, new Callable<Void>() {
+            @Override
+            public Void call() {
+                System.loadLibrary("c++_shared");
+                return null;
+            }
+        });
+        add(OPENCV, new Callable<Void>() {
+            @Override
+            public Void call() {
+                if (!StaticHelper.initOpenCV(false)) {
+                    throw new IllegalStateException("OpenCV library not found");
+                }
+                return null;
+            }
+        }, CPP_RUNTIME);
+        add(UPLOAD_NATIVE, new Callable<Void>() {
+            @Override
+            public Void call() {
+                System.loadLibrary("calibration_upload_native");
+                return null;
+            }
+        }, CPP_RUNTIME);
+        add(ASSETS, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                AssetCache cache = new AssetHelper(AppStartup.this.context.getAssets())
+                        .cacheAssetFolderAsync(AppStartup.this.context, ASSET_FOLDER);
+                assetCache = cache;
+                cache.getCompletion().get();
+                return null;
+            }
+        });
+        add(CALIBRATION_STORE, new Callable<Void>() {
+            @Override
+            public Void call() {
+                CalibrationStore.get(AppStartup.this.context);
+                return null;
+            }
+        });
+
+        final AtomicInteger count = new AtomicInteger();
+        int threads = Math.max(1, Math.min(nodes.size(), Runtime.getRuntime().availableProcessors()));
+        executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        return new Thread(runnable, TAG + "-" + count.incrementAndGet());
+                    }
+                });
+        // Nothing runs after startup, so let the threads go.
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /** @return the instance, which starts initialising when first asked for */
+    public static synchronized AppStartup get(Context context) {
+        if (sInstance == null) {
+            sInstance = new AppStartup(context.getApplicationContext());
+            sInstance.start();
+        }
+        return sInstance;
+    }
+
+    private void start() {
+        for (Node node : nodes.values()) {
+            if (node.dependencies.length == 0) {
+                executor.execute(node.task);
+            }
+        }
+    }
+
+    /** @return a future completing when the subsystem is ready, or failing with its error */
+    public Future<Void> ready(String subsystem) {
+        return node(subsystem).task;
+    }
+
+    /** @return true if the subsystem is ready, false if it is still loading or failed */
+    public boolean isReady(String subsystem) {
+        FutureTask<Void> task = node(subsystem).task;
+        if (!task.isDone()) {
+            return false;
+        }
+        try {
+            task.get();
+            return true;
+        } catch (ExecutionException | InterruptedException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Waits for the subsystem. Only meant for the main thread where the wait is known to be
+     * short; prefer {@link #whenReady(String, Listener)}.
+     *
+     * @return false if the subsystem failed, whose error is logged
+     */
+    public boolean await(String subsystem) {
+        try {
+            ready(subsystem).get();
+            return true;
+        } catch (ExecutionException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /** Calls the listener on the main thread once the subsystem is ready or has failed. */
+    public void whenReady(final String subsystem, final Listener listener) {
+        node(subsystem).whenDone(new Runnable() {
+            @Override
+            public void run() {
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            ready(subsystem).get();
+                        } catch (ExecutionException e) {
+                            listener.onFailed(subsystem, e.getCause());
+                            return;
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                        listener.onReady(subsystem);
+                    }
+                });
+            }
+        });
+    }
+
+    /** @return the cached asset folder, or null before {@link #ASSETS} has started */
+    public AssetCache getAssetCache() {
+        return assetCache;
+    }
+
+    public StartupTrace getTrace() {
+        return trace;
+    }
+
+    private Node node(String subsystem) {
+        Node node = nodes.get(subsystem);
+        if (node == null) {
+            throw new IllegalArgumentException("Unknown subsystem " + subsystem);
+        }
+        return node;
+    }
+
+    private void add(String name, Callable<Void> body, String... dependencies) {
+        Node node = new Node(name, body, dependencies);
+        for (String dependency : dependencies) {
+            node(dependency).dependents.add(node);
+        }
+        nodes.put(name, node);
+    }
+
+    /**
+     * A subsystem in the graph. It is queued once the last of its dependencies is done, which
+     * keeps the pool threads from ever waiting on each other.
+     */
+    private final class Node {
+        final String name;
+        final String[] dependencies;
+        final List<Node> dependents = new ArrayList<>();
+        final FutureTask<Void> task;
+        // Guarded by this.
+        private int pendingDependencies;
+        private final List<Runnable> doneCallbacks = new ArrayList<>();
+
+        Node(final String name, final Callable<Void> body, String[] dependencies) {
+            this.name = name;
+            this.dependencies = dependencies;
+            pendingDependencies = dependencies.length;
+            task = new FutureTask<Void>(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    checkDependencies();
+                    trace.begin(name);
+                    Trace.beginSection(name);
+                    boolean failed = true;
+                    try {
+                        body.call();
+                        failed = false;
+                    } finally {
+                        Trace.endSection();
+                        trace.end(name, failed);
+                    }
+                    return null;
+                }
+            }) {
+                @Override
+                protected void done() {
+                    onDone();
+                }
+            };
+        }
+
+        private void checkDependencies() throws InterruptedException {
+            for (String dependency : dependencies) {
+                try {
+                    node(dependency).task.get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException(name + " needs " + dependency + ", which failed", e.getCause());
+                }
+            }
+        }
+
+        private void onDone() {
+            try {
+                task.get();
+            } catch (ExecutionException e) {
+                Log.e(TAG, name + " failed", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (Node dependent : dependents) {
+                dependent.dependencyDone();
+            }
+            List<Runnable> callbacks;
+            synchronized (this) {
+                callbacks = new ArrayList<>(doneCallbacks);
+                doneCallbacks.clear();
+            }
+            for (Runnable callback : callbacks) {
+                callback.run();
+            }
+        }
+
+        private void dependencyDone() {
+            synchronized (this) {
+                if (--pendingDependencies > 0) {
+                    return;
+                }
+            }
+            executor.execute(task);
+        }
+
+        void whenDone(Runnable callback) {
+            synchronized (this) {
+                if (!task.isDone()) {
+                    doneCallbacks.add(callback);
+                    return;
+                }
+            }
+            callback.run();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.archecker.startup;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * When each startup subsystem began and finished, and when marks such as the first preview
+ * frame were reached, in milliseconds since the process started. Before API 24 the process
+ * start time isn't known, and times count from when this class was loaded instead.
+ */
+public class StartupTrace {
+    private static final String TAG = "StartupTrace";
+    private static final long ORIGIN = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N ?
+            Process.getStartElapsedRealtime() : SystemClock.elapsedRealtime();
+
+    private static final class Span {
+        final String name;
+        final String thread;
+        final long begin;
+        final boolean mark;
+        long end = -1;
+        boolean failed;
+
+        Span(String name, String thread, long begin, boolean mark) {
+            this.name = name;
+            this.thread = thread;
+            this.begin = begin;
+            this.mark = mark;
+        }
+    }
+
+    // Guarded by this.
+    private final List<Span> spans = new ArrayList<>();
+
+    static long now() {
+        return SystemClock.elapsedRealtime() - ORIGIN;
+    }
+
+    synchronized void begin(String name) {
+        spans.add(new Span(name, Thread.currentThread().getName(), now(), false));
+    }
+
+    synchronized void end(String name, boolean failed) {
+        Span span = find(name);
+        if (span != null && span.end < 0) {
+            span.end = now();
+            span.failed = failed;
+        }
+    }
+
+    /**
+     * Records a point in time, once per process; the trace so far is logged with it.
+     *
+     * @return false if the mark was already reached before
+     */
+    public boolean mark(String name) {
+        synchronized (this) {
+            if (find(name) != null) {
+                return false;
+            }
+            Span span = new Span(name, Thread.currentThread().getName(), now(), true);
+            span.end = span.begin;
+            spans.add(span);
+        }
+        Log.i(TAG, toString());
+        return true;
+    }
+
+    /** @return the time the subsystem finished or the mark was reached, or -1 if not yet */
+    public synchronized long getTime(String name) {
+        Span span = find(name);
+        return span == null ? -1 : span.end;
+    }
+
+    private Span find(String name) {
+        for (Span span : spans) {
+            if (span.name.equals(name)) {
+                return span;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder("Startup, ms since process start:");
+        for (Span span : spans) {
+            builder.append("\n  ").append(span.name).append(' ');
+            if (span.mark) {
+                builder.append("at ").append(span.begin);
+            } else {
+                builder.append(span.begin).append('-').append(span.end < 0 ? "?" : String.valueOf(span.end));
+                if (span.end >= 0) {
+                    builder.append(" (").append(span.end - span.begin).append(" ms)");
+                }
+                if (span.failed) {
+                    builder.append(" FAILED");
+                }
+            }
+            builder.append(" on ").append(span.thread);
+        }
+        return builder.toString();
+    }
+}
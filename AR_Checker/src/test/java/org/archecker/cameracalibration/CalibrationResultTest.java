@@ -0,0 +1,84 @@
+package org.archecker.cameracalibration;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CalibrationResultTest {
+
+    static CalibrationResult result(double seed) {
+        double[] cameraMatrix = new double[9];
+        for (int i = 0; i < cameraMatrix.length; i++) {
+            cameraMatrix[i] = seed + i / 7.0;
+        }
+        double[] distortion = {seed * 0.01, -0.2, 0, 0, 0.05};
+        return new CalibrationResult(cameraMatrix, distortion, 0.25 + seed, 0.3f, 0.1f, 0.9f, 24, 1600000000000L);
+    }
+
+    @Test
+    public void encodesTo152Bytes() {
+        CalibrationResult result = result(1);
+        assertEquals(152, result.encodedBytes());
+        ByteBuffer buffer = ByteBuffer.allocate(result.encodedBytes());
+        result.writeTo(buffer);
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    public void roundTrip() {
+        CalibrationResult result = result(3);
+        ByteBuffer buffer = ByteBuffer.allocate(result.encodedBytes());
+        result.writeTo(buffer);
+        buffer.flip();
+        CalibrationResult read = CalibrationResult.readFrom(buffer);
+        assertFalse(buffer.hasRemaining());
+        assertArrayEquals(result.cameraMatrix, read.cameraMatrix, 0);
+        assertArrayEquals(result.distortionCoefficients, read.distortionCoefficients, 0);
+        assertEquals(result.rms, read.rms, 0);
+        assertEquals(result.meanViewError, read.meanViewError, 0);
+        assertEquals(result.minViewError, read.minViewError, 0);
+        assertEquals(result.maxViewError, read.maxViewError, 0);
+        assertEquals(result.views, read.views);
+        assertEquals(result.timestamp, read.timestamp);
+    }
+
+    @Test
+    public void shorterDistortionIsPaddedWithZeros() {
+        CalibrationResult result = new CalibrationResult(new double[9], new double[]{0.1, 0.2}, 1, 0, 0, 0, 0, 0);
+        ByteBuffer buffer = ByteBuffer.allocate(result.encodedBytes());
+        result.writeTo(buffer);
+        buffer.flip();
+        CalibrationResult read = CalibrationResult.readFrom(buffer);
+        assertArrayEquals(new double[]{0.1, 0.2, 0, 0, 0}, read.distortionCoefficients, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void wrongCameraMatrixSizeIsRejected() {
+        ByteBuffer buffer = ByteBuffer.allocate(152);
+        result(1).writeTo(buffer);
+        buffer.putInt(0, 4);
+        buffer.flip();
+        CalibrationResult.readFrom(buffer);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tooManyDistortionCoefficientsAreRejected() {
+        ByteBuffer buffer = ByteBuffer.allocate(152);
+        result(1).writeTo(buffer);
+        buffer.putInt(4 + 9 * 8, 8);
+        buffer.flip();
+        CalibrationResult.readFrom(buffer);
+    }
+
+    @Test(expected = BufferUnderflowException.class)
+    public void truncatedRecordIsRejected() {
+        ByteBuffer buffer = ByteBuffer.allocate(152);
+        result(1).writeTo(buffer);
+        buffer.flip();
+        buffer.limit(151);
+        CalibrationResult.readFrom(buffer);
+    }
+}
@@ -0,0 +1,122 @@
+package org.archecker.cameracalibration;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CalibrationStoreTest {
+    private static final int HEADER_BYTES = 12;
+    private static final int RECORD_BYTES = 16 + 152;
+
+    private static File missingFile() throws IOException {
+        File file = File.createTempFile("calibrations", ".bin");
+        assertTrue(file.delete());
+        return file;
+    }
+
+    private static CalibrationStore storeWithTwoProfiles() throws IOException {
+        CalibrationStore store = new CalibrationStore(missingFile());
+        store.decode(encoded(2));
+        return store;
+    }
+
+    /** A store with profiles for cameras 0 and 1 at 640x480, model 7. */
+    private static ByteBuffer encoded(int profiles) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + profiles * RECORD_BYTES);
+        buffer.putInt(0x43414C53);
+        buffer.putInt(1);
+        buffer.putInt(profiles);
+        for (int i = 0; i < profiles; i++) {
+            buffer.putInt(i);
+            buffer.putInt(640);
+            buffer.putInt(480);
+            buffer.putInt(7);
+            CalibrationResultTest.result(i).writeTo(buffer);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    @Test
+    public void encodeDecodeRoundTrip() throws IOException {
+        CalibrationStore store = storeWithTwoProfiles();
+        assertEquals(2, store.size());
+        assertEquals(1.25, store.find(1, 640, 480, 7).rms, 0);
+        assertNull(store.find(1, 640, 480, 8));
+
+        ByteBuffer encoded = store.encode();
+        encoded.flip();
+        assertArrayEquals(bytes(encoded(2)), bytes(encoded));
+    }
+
+    @Test
+    public void loadsTheFile() throws IOException {
+        File file = missingFile();
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(bytes(encoded(2)));
+        out.close();
+        try {
+            CalibrationStore store = new CalibrationStore(file);
+            store.load();
+            assertEquals(2, store.size());
+            assertEquals(0.25, store.find(0, 640, 480, 7).rms, 0);
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void missingFileIsAnEmptyStore() throws IOException {
+        CalibrationStore store = new CalibrationStore(missingFile());
+        store.load();
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void foreignMagicIsRejected() throws IOException {
+        ByteBuffer buffer = encoded(2);
+        buffer.putInt(0, 0x12345678);
+        CalibrationStore store = new CalibrationStore(missingFile());
+        store.decode(buffer);
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void newerVersionIsRejected() throws IOException {
+        ByteBuffer buffer = encoded(2);
+        buffer.putInt(4, 2);
+        CalibrationStore store = new CalibrationStore(missingFile());
+        store.decode(buffer);
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void truncatedStoreKeepsCompleteProfiles() throws IOException {
+        ByteBuffer buffer = encoded(2);
+        buffer.limit(buffer.limit() - 10);
+        CalibrationStore store = new CalibrationStore(missingFile());
+        store.decode(buffer);
+        assertEquals(1, store.size());
+        assertNotNull(store.find(0, 640, 480, 7));
+    }
+
+    @Test
+    public void findRmsMatchesTheClosestSave() throws IOException {
+        CalibrationStore store = storeWithTwoProfiles();
+        long saved = CalibrationResultTest.result(0).timestamp;
+        assertEquals(1.25, store.findRms(1, 640, 480, saved + 500, 1000), 0);
+        assertTrue(Double.isNaN(store.findRms(1, 640, 480, saved + 5000, 1000)));
+        assertTrue(Double.isNaN(store.findRms(1, 1280, 720, saved, 1000)));
+    }
+}
@@ -0,0 +1,129 @@
+package org.archecker.cameracalibration;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CornerStoreTest {
+    private static final int CORNERS = 3;
+
+    private static float[] view(int seed) {
+        float[] corners = new float[CORNERS * 2];
+        for (int i = 0; i < corners.length; i++) {
+            corners[i] = seed * 100 + i + 0.5f;
+        }
+        return corners;
+    }
+
+    private static void assertView(CornerStore store, int index, int seed) {
+        float[] actual = new float[CORNERS * 2];
+        store.get(index, actual);
+        assertArrayEquals(view(seed), actual, 0f);
+    }
+
+    @Test
+    public void addReturnsIndicesAndKeepsViews() {
+        CornerStore store = new CornerStore(CORNERS);
+        assertEquals(0, store.add(view(0)));
+        assertEquals(1, store.add(view(1)));
+        assertEquals(2, store.size());
+        assertView(store, 0, 0);
+        assertView(store, 1, 1);
+    }
+
+    @Test
+    public void addGrowsBeyondInitialCapacity() {
+        CornerStore store = new CornerStore(CORNERS);
+        for (int i = 0; i < 40; i++) {
+            store.add(view(i));
+        }
+        assertEquals(40, store.size());
+        for (int i = 0; i < 40; i++) {
+            assertView(store, i, i);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addRejectsWrongCornerCount() {
+        new CornerStore(CORNERS).add(new float[CORNERS * 2 + 2]);
+    }
+
+    @Test
+    public void removeMovesLastViewIntoSlot() {
+        CornerStore store = new CornerStore(CORNERS);
+        for (int i = 0; i < 4; i++) {
+            store.add(view(i));
+        }
+        store.remove(1);
+        assertEquals(3, store.size());
+        assertView(store, 0, 0);
+        assertView(store, 1, 3);
+        assertView(store, 2, 2);
+
+        store.remove(2);
+        assertEquals(2, store.size());
+        assertView(store, 0, 0);
+        assertView(store, 1, 3);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void removeRejectsMissingView() {
+        CornerStore store = new CornerStore(CORNERS);
+        store.add(view(0));
+        store.remove(1);
+    }
+
+    @Test
+    public void snapshotIsIndependent() {
+        CornerStore store = new CornerStore(CORNERS);
+        store.add(view(0));
+        CornerStore copy = store.snapshot();
+        store.add(view(1));
+        store.remove(0);
+        assertEquals(1, copy.size());
+        assertView(copy, 0, 0);
+    }
+
+    @Test
+    public void writeToReadFromRoundTrip() {
+        CornerStore store = new CornerStore(CORNERS);
+        for (int i = 0; i < 20; i++) {
+            store.add(view(i));
+        }
+        store.remove(5);
+
+        for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            ByteBuffer buffer = ByteBuffer.allocate(store.encodedBytes() + 4).order(order);
+            buffer.putInt(42);
+            store.writeTo(buffer);
+            assertEquals(store.encodedBytes() + 4, buffer.position());
+
+            buffer.flip();
+            assertEquals(42, buffer.getInt());
+            CornerStore read = CornerStore.readFrom(buffer);
+            assertFalse(buffer.hasRemaining());
+            assertEquals(CORNERS, read.getCornersPerView());
+            assertEquals(19, read.size());
+            for (int i = 0; i < 19; i++) {
+                assertView(read, i, i == 5 ? 19 : i);
+            }
+            // The restored store keeps growing like a new one.
+            read.add(view(50));
+            assertView(read, 19, 50);
+        }
+    }
+
+    @Test
+    public void emptyStoreRoundTrip() {
+        CornerStore store = new CornerStore(CORNERS);
+        ByteBuffer buffer = ByteBuffer.allocate(store.encodedBytes());
+        store.writeTo(buffer);
+        buffer.flip();
+        CornerStore read = CornerStore.readFrom(buffer);
+        assertEquals(0, read.size());
+        assertEquals(CORNERS, read.getCornersPerView());
+    }
+}
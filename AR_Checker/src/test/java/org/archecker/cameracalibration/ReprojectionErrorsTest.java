@@ -0,0 +1,70 @@
+package org.archecker.cameracalibration;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ReprojectionErrorsTest {
+    private static final int CORNERS = 2;
+
+    /** View i has corner errors i + 1 and i + 2, so its view error differs from the others. */
+    private static ReprojectionErrors errors(int views) {
+        float[] viewErrors = new float[views];
+        float[] cornerErrors = new float[views * CORNERS];
+        double squared = 0;
+        for (int i = 0; i < views; i++) {
+            viewErrors[i] = i + 1.5f;
+            cornerErrors[i * CORNERS] = i + 1;
+            cornerErrors[i * CORNERS + 1] = i + 2;
+            squared += (i + 1) * (i + 1) + (i + 2) * (i + 2);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(3 * 4 + 8 + (viewErrors.length + cornerErrors.length) * 4);
+        buffer.putInt(views);
+        buffer.putInt(CORNERS);
+        buffer.putDouble(Math.sqrt(squared / cornerErrors.length));
+        buffer.putInt(cornerErrors.length);
+        buffer.asFloatBuffer().put(viewErrors).put(cornerErrors);
+        buffer.rewind();
+        return ReprojectionErrors.readFrom(buffer);
+    }
+
+    @Test
+    public void removedViewTakesTheLastOne() {
+        ReprojectionErrors errors = errors(4).withoutView(1);
+        assertEquals(3, errors.getViewCount());
+        assertArrayEquals(new float[]{1.5f, 4.5f, 3.5f}, errors.getViewErrors(), 0);
+        assertEquals(4, errors.getCornerError(1, 0), 0);
+        assertEquals(5, errors.getCornerError(1, 1), 0);
+        assertEquals(3, errors.getCornerError(2, 0), 0);
+    }
+
+    @Test
+    public void removingTheLastViewKeepsTheOthers() {
+        ReprojectionErrors errors = errors(3).withoutView(2);
+        assertArrayEquals(new float[]{1.5f, 2.5f}, errors.getViewErrors(), 0);
+    }
+
+    @Test
+    public void aggregatesCoverTheRemainingViews() {
+        ReprojectionErrors errors = errors(3).withoutView(0);
+        // Views 2 and 1 remain, with corner errors 3, 4 and 2, 3.
+        assertEquals(Math.sqrt((9 + 16 + 4 + 9) / 4.0), errors.getRms(), 1e-9);
+        assertEquals(2.5f, errors.getMinViewError(), 0);
+        assertEquals(3.5f, errors.getMaxViewError(), 0);
+        assertEquals(3f, errors.getMeanViewError(), 1e-6);
+    }
+
+    @Test
+    public void removingTheOnlyView() {
+        ReprojectionErrors errors = errors(1).withoutView(0);
+        assertEquals(0, errors.getViewCount());
+        assertEquals(0, errors.getRms(), 0);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void missingViewIsRejected() {
+        errors(2).withoutView(2);
+    }
+}
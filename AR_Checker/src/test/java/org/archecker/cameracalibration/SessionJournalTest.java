@@ -0,0 +1,133 @@
+package org.archecker.cameracalibration;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SessionJournalTest {
+    private static final int CORNERS = 4;
+    private static final SessionJournal.Header HEADER =
+            new SessionJournal.Header(640, 480, 4, 1, 1, 0.02, CORNERS, 1000L);
+
+    private final CRC32 crc = new CRC32();
+
+    private static float[] view(int seed) {
+        float[] corners = new float[CORNERS * 2];
+        for (int i = 0; i < corners.length; i++) {
+            corners[i] = seed * 10 + i;
+        }
+        return corners;
+    }
+
+    private ByteBuffer journal(SessionJournal.Header header, int views) {
+        ByteBuffer buffer = ByteBuffer.allocate(SessionJournal.HEADER_BYTES
+                + views * SessionJournal.recordBytes(header.cornersPerView));
+        header.writeTo(buffer);
+        for (int i = 0; i < views; i++) {
+            SessionJournal.putRecord(buffer, 5000L + i, view(i), crc);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void assertViews(SessionJournal.Session session, int views) {
+        assertEquals(views, session.views.size());
+        assertEquals(views, session.timestamps.size());
+        float[] corners = new float[CORNERS * 2];
+        for (int i = 0; i < views; i++) {
+            session.views.get(i, corners);
+            assertArrayEquals(view(i), corners, 0f);
+            assertEquals(5000L + i, (long) session.timestamps.get(i));
+        }
+    }
+
+    @Test
+    public void recordRoundTrip() {
+        SessionJournal.Session session = SessionJournal.parse(journal(HEADER, 3), HEADER, crc);
+        assertNotNull(session);
+        assertFalse(session.torn);
+        assertEquals(1000L, session.header.created);
+        assertViews(session, 3);
+    }
+
+    @Test
+    public void emptyJournalHasNoViews() {
+        SessionJournal.Session session = SessionJournal.parse(journal(HEADER, 0), HEADER, crc);
+        assertNotNull(session);
+        assertFalse(session.torn);
+        assertViews(session, 0);
+    }
+
+    @Test
+    public void recordSizeMatchesEncoding() {
+        ByteBuffer record = ByteBuffer.allocate(SessionJournal.recordBytes(CORNERS));
+        SessionJournal.putRecord(record, 1L, view(0), crc);
+        assertFalse(record.hasRemaining());
+    }
+
+    @Test
+    public void corruptRecordDropsItAndTheRest() {
+        ByteBuffer buffer = journal(HEADER, 3);
+        int secondRecord = SessionJournal.HEADER_BYTES + SessionJournal.recordBytes(CORNERS);
+        // Flip a bit in a corner of the second view.
+        buffer.put(secondRecord + 12, (byte) (buffer.get(secondRecord + 12) ^ 1));
+        SessionJournal.Session session = SessionJournal.parse(buffer, HEADER, crc);
+        assertNotNull(session);
+        assertTrue(session.torn);
+        assertViews(session, 1);
+    }
+
+    @Test
+    public void corruptChecksumIsDetected() {
+        ByteBuffer buffer = journal(HEADER, 2);
+        int end = buffer.limit();
+        buffer.put(end - 1, (byte) (buffer.get(end - 1) ^ 0x80));
+        SessionJournal.Session session = SessionJournal.parse(buffer, HEADER, crc);
+        assertTrue(session.torn);
+        assertViews(session, 1);
+    }
+
+    @Test
+    public void tornLastRecordIsDropped() {
+        ByteBuffer buffer = journal(HEADER, 3);
+        buffer.limit(buffer.limit() - 5);
+        SessionJournal.Session session = SessionJournal.parse(buffer, HEADER, crc);
+        assertNotNull(session);
+        assertTrue(session.torn);
+        assertViews(session, 2);
+    }
+
+    @Test
+    public void mismatchingHeaderIsRejected() {
+        SessionJournal.Header otherResolution =
+                new SessionJournal.Header(1280, 720, 4, 1, 1, 0.02, CORNERS, 1000L);
+        SessionJournal.Header otherFieldSize =
+                new SessionJournal.Header(640, 480, 4, 1, 1, 0.03, CORNERS, 1000L);
+        assertNull(SessionJournal.parse(journal(HEADER, 2), otherResolution, crc));
+        assertNull(SessionJournal.parse(journal(HEADER, 2), otherFieldSize, crc));
+        // The start time is not part of the match.
+        SessionJournal.Header later = new SessionJournal.Header(640, 480, 4, 1, 1, 0.02, CORNERS, 9000L);
+        assertNotNull(SessionJournal.parse(journal(HEADER, 2), later, crc));
+    }
+
+    @Test
+    public void foreignDataIsRejected() {
+        ByteBuffer buffer = journal(HEADER, 1);
+        buffer.putInt(0, 0x12345678);
+        assertNull(SessionJournal.parse(buffer, HEADER, crc));
+
+        buffer = journal(HEADER, 1);
+        buffer.putInt(4, 99);
+        assertNull(SessionJournal.parse(buffer, HEADER, crc));
+    }
+
+    @Test
+    public void truncatedHeaderIsRejected() {
+        ByteBuffer buffer = journal(HEADER, 0);
+        buffer.limit(SessionJournal.HEADER_BYTES - 1);
+        assertNull(SessionJournal.parse(buffer, HEADER, crc));
+    }
+}
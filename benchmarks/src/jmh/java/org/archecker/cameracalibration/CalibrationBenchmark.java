@@ -0,0 +1,76 @@
+package org.archecker.cameracalibration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.calib3d.Calib3d;
+import org.opencv.core.Mat;
+import org.opencv.core.Size;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The solve behind {@link CameraCalibrator#calibrate()}, its reprojection error statistics and
+ * the pose check of the last captured frame.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CalibrationBenchmark {
+    @Param({"10", "25"})
+    public int views;
+
+    private CameraCalibrator calibrator;
+    private Mat objectPoints;
+    private List<Mat> imagePoints;
+    private final List<Mat> rvecs = new ArrayList<>();
+    private final List<Mat> tvecs = new ArrayList<>();
+    private final Mat cameraMatrix = new Mat();
+    private final Mat distortion = new Mat();
+
+    @Setup
+    public void setUp() {
+        Fixtures.loadOpenCv();
+        calibrator = Fixtures.calibratorWithViews(views);
+
+        // Inputs of the error statistics as a solve leaves them.
+        imagePoints = new ArrayList<>(views);
+        for (int i = 0; i < views; i++) {
+            imagePoints.add(calibrator.getFrame(i));
+        }
+        objectPoints = calibrator.getBoard().getObjectPoints();
+        calibrator.getCameraMatrix().copyTo(cameraMatrix);
+        Calib3d.calibrateCamera(calibrator.getBoard().getObjectPoints(views), imagePoints,
+                new Size(Fixtures.WIDTH, Fixtures.HEIGHT), cameraMatrix, distortion,
+                rvecs, tvecs, 0);
+    }
+
+    /** Publishing only copies the result, so the solve is measured without it. */
+    @Benchmark
+    public Object calibrate() {
+        return calibrator.solve(null);
+    }
+
+    @Benchmark
+    public ReprojectionErrors computeReprojectionErrors() {
+        return ReprojectionErrors.compute(objectPoints, imagePoints, rvecs, tvecs, cameraMatrix, distortion);
+    }
+
+    @Benchmark
+    public boolean checkLastFrame() {
+        return calibrator.checkLastFrame();
+    }
+}
@@ -0,0 +1,148 @@
+package org.archecker.cameracalibration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.opencv.calib3d.Calib3d;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfDouble;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.MatOfPoint3f;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Deterministic benchmark inputs. Corner sets are the default board projected through a fixed
+ * camera from seeded poses, with half a pixel of detector noise; the image is a rendered,
+ * slightly tilted checkerboard. The same seed always gives the same fixtures, so results of
+ * different runs compare.
+ */
+public final class Fixtures {
+    public static final int WIDTH = 640;
+    public static final int HEIGHT = 480;
+    private static final long SEED = 0x43414C42L;
+    private static final double FOCAL_LENGTH = 600;
+    private static final double[] DISTORTION = {-0.12, 0.05, 0, 0, 0};
+
+    private static boolean sOpenCvLoaded;
+
+    private Fixtures() {
+    }
+
+    public static synchronized void loadOpenCv() {
+        if (!sOpenCvLoaded) {
+            nu.pattern.OpenCV.loadLocally();
+            sOpenCvLoaded = true;
+        }
+    }
+
+    public static Mat cameraMatrix() {
+        Mat cameraMatrix = Mat.eye(3, 3, CvType.CV_64FC1);
+        cameraMatrix.put(0, 0, FOCAL_LENGTH, 0, WIDTH / 2.0, 0, FOCAL_LENGTH, HEIGHT / 2.0, 0, 0, 1);
+        return cameraMatrix;
+    }
+
+    public static MatOfDouble distortion() {
+        return new MatOfDouble(DISTORTION);
+    }
+
+    /** Seeded board poses, rotation vectors and translations in metres. */
+    public static void poses(int count, List<Mat> rvecs, List<Mat> tvecs) {
+        Random random = new Random(SEED);
+        for (int i = 0; i < count; i++) {
+            Mat rvec = new Mat(3, 1, CvType.CV_64FC1);
+            rvec.put(0, 0, uniform(random, 0.35), uniform(random, 0.35), uniform(random, 0.2));
+            Mat tvec = new Mat(3, 1, CvType.CV_64FC1);
+            tvec.put(0, 0, -0.12 + uniform(random, 0.05), -0.055 + uniform(random, 0.04),
+                    0.55 + uniform(random, 0.1));
+            rvecs.add(rvec);
+            tvecs.add(tvec);
+        }
+    }
+
+    /** The board corners seen from each pose, as a detector would report them. */
+    public static List<MatOfPoint2f> cornerSets(BoardModel board, List<Mat> rvecs, List<Mat> tvecs) {
+        Random noise = new Random(SEED + 1);
+        MatOfPoint3f objectPoints = board.getObjectPoints();
+        Mat cameraMatrix = cameraMatrix();
+        MatOfDouble distortion = distortion();
+        List<MatOfPoint2f> cornerSets = new ArrayList<>(rvecs.size());
+        for (int i = 0; i < rvecs.size(); i++) {
+            MatOfPoint2f corners = new MatOfPoint2f();
+            Calib3d.projectPoints(objectPoints, rvecs.get(i), tvecs.get(i), cameraMatrix, distortion, corners);
+            Point[] points = corners.toArray();
+            for (Point point : points) {
+                point.x += noise.nextGaussian() * 0.5;
+                point.y += noise.nextGaussian() * 0.5;
+            }
+            corners.fromArray(points);
+            cornerSets.add(corners);
+        }
+        cameraMatrix.release();
+        distortion.release();
+        return cornerSets;
+    }
+
+    /**
+     * A calibrator holding {@code views} captured views. Candidates the coverage index rejects
+     * as redundant are skipped, like on the device.
+     */
+    public static CameraCalibrator calibratorWithViews(int views) {
+        CameraCalibrator calibrator = new CameraCalibrator(WIDTH, HEIGHT);
+        List<Mat> rvecs = new ArrayList<>();
+        List<Mat> tvecs = new ArrayList<>();
+        poses(views * 20, rvecs, tvecs);
+        List<MatOfPoint2f> cornerSets = cornerSets(calibrator.getBoard(), rvecs, tvecs);
+        for (MatOfPoint2f corners : cornerSets) {
+            if (calibrator.getCornersBufferSize() == views) {
+                break;
+            }
+            calibrator.publishPattern(true, corners);
+            calibrator.addCorners();
+        }
+        if (calibrator.getCornersBufferSize() < views) {
+            throw new IllegalStateException("Only " + calibrator.getCornersBufferSize() + " of " + views
+                    + " views were accepted");
+        }
+        return calibrator;
+    }
+
+    /** A BGR checkerboard of 8x8 fields, warped as if photographed at an angle. */
+    public static Mat checkerboardImage() {
+        int field = 48;
+        int margin = (HEIGHT - 8 * field) / 2;
+        Mat board = new Mat(HEIGHT, WIDTH, CvType.CV_8UC3, new Scalar(235, 235, 235));
+        int left = (WIDTH - 8 * field) / 2;
+        for (int row = 0; row < 8; row++) {
+            for (int col = 0; col < 8; col++) {
+                if ((row + col) % 2 == 1) {
+                    Point topLeft = new Point(left + col * field, margin + row * field);
+                    Point bottomRight = new Point(topLeft.x + field - 1, topLeft.y + field - 1);
+                    Imgproc.rectangle(board, topLeft, bottomRight, new Scalar(30, 30, 30), -1);
+                }
+            }
+        }
+        MatOfPoint2f from = new MatOfPoint2f(new Point(0, 0), new Point(WIDTH, 0),
+                new Point(WIDTH, HEIGHT), new Point(0, HEIGHT));
+        MatOfPoint2f to = new MatOfPoint2f(new Point(40, 20), new Point(WIDTH - 20, 50),
+                new Point(WIDTH - 50, HEIGHT - 10), new Point(10, HEIGHT - 40));
+        Mat homography = Imgproc.getPerspectiveTransform(from, to);
+        Mat image = new Mat();
+        Imgproc.warpPerspective(board, image, homography, new Size(WIDTH, HEIGHT), Imgproc.INTER_LINEAR,
+                Core.BORDER_CONSTANT, new Scalar(120, 110, 100));
+        board.release();
+        homography.release();
+        from.release();
+        to.release();
+        return image;
+    }
+
+    private static double uniform(Random random, double range) {
+        return (random.nextDouble() * 2 - 1) * range;
+    }
+}
@@ -0,0 +1,49 @@
+package org.archecker.cameracalibration;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * {@link CameraRotationHandler#rodriguesToEuler(Mat, int)} over the fixture poses, as
+ * {@link CameraCalibrator#checkLastFrame()} calls it once per captured frame.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RotationBenchmark {
+    private static final int POSES = 64;
+
+    private final List<Mat> rvecs = new ArrayList<>(POSES);
+
+    @Setup
+    public void setUp() {
+        Fixtures.loadOpenCv();
+        Fixtures.poses(POSES, rvecs, new ArrayList<Mat>(POSES));
+    }
+
+    @Benchmark
+    public void rodriguesToEuler(Blackhole blackhole) {
+        for (Mat rvec : rvecs) {
+            Mat angles = CameraRotationHandler.rodriguesToEuler(rvec, CameraRotationHandler.CALIB_DEGREES);
+            blackhole.consume(angles.get(0, 0)[0]);
+            angles.release();
+        }
+    }
+}
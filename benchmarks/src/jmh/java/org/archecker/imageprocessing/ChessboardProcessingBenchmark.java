@@ -0,0 +1,50 @@
+package org.archecker.imageprocessing;
+
+import java.util.concurrent.TimeUnit;
+
+import org.archecker.cameracalibration.Fixtures;
+import org.opencv.core.Mat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Field cropping on the rendered checkerboard. The input is copied first because the crop may
+ * draw into it; the copy is a small part of the measured time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChessboardProcessingBenchmark {
+    private Mat image;
+    private final Mat input = new Mat();
+
+    @Setup
+    public void setUp() {
+        Fixtures.loadOpenCv();
+        image = Fixtures.checkerboardImage();
+    }
+
+    @Benchmark
+    public Mat cropCheckerFields() {
+        image.copyTo(input);
+        return ChessboardProcessing.cropCheckerFields(input);
+    }
+
+    @TearDown
+    public void tearDown() {
+        image.release();
+        input.release();
+    }
+}
@@ -0,0 +1,12 @@
+package android.os;
+
+/** Desktop stand-in. */
+public class BadParcelableException extends RuntimeException {
+    public BadParcelableException(String msg) {
+        super(msg);
+    }
+
+    public BadParcelableException(Exception cause) {
+        super(cause);
+    }
+}
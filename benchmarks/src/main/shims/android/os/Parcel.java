@@ -0,0 +1,34 @@
+package android.os;
+
+/**
+ * Desktop stand-in so the calibration code compiles. Parcelling is not benchmarked, every
+ * method throws.
+ */
+public final class Parcel {
+    private Parcel() {
+    }
+
+    public void writeInt(int val) {
+        throw new UnsupportedOperationException();
+    }
+
+    public int readInt() {
+        throw new UnsupportedOperationException();
+    }
+
+    public void writeString(String val) {
+        throw new UnsupportedOperationException();
+    }
+
+    public String readString() {
+        throw new UnsupportedOperationException();
+    }
+
+    public void writeByteArray(byte[] b, int offset, int len) {
+        throw new UnsupportedOperationException();
+    }
+
+    public byte[] createByteArray() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,31 @@
+package android.util;
+
+/**
+ * Desktop stand-in for the Android logger. Only warnings and errors are printed, so the
+ * benchmark output is not flooded by the info messages of the calibration code.
+ */
+public final class Log {
+    private Log() {
+    }
+
+    public static int d(String tag, String msg) {
+        return 0;
+    }
+
+    public static int i(String tag, String msg) {
+        return 0;
+    }
+
+    public static int w(String tag, String msg) {
+        return print(tag, msg);
+    }
+
+    public static int e(String tag, String msg) {
+        return print(tag, msg);
+    }
+
+    private static int print(String tag, String msg) {
+        System.err.println(tag + ": " + msg);
+        return 0;
+    }
+}
@@ -49,6 +49,10 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
     protected int mCameraIndex = CAMERA_ID_ANY;
     protected boolean mEnabled;
     protected FpsMeter mFpsMeter = null;
+    protected volatile FrameTimingsMeter mTimingsMeter = null;
+    private final LatencyHistogram mBitmapTiming = FrameTimings.get(FrameTimings.MAT_TO_BITMAP);
+    private final LatencyHistogram mDrawTiming = FrameTimings.get(FrameTimings.CANVAS_DRAW);
+    private volatile int mLastFrameConversions;
 
     public static final int CAMERA_ID_ANY   = -1;
     public static final int CAMERA_ID_BACK  = 99;
@@ -190,6 +194,80 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
         public Mat gray();
     };
 
+    /**
+     * Frame that computes each representation at most once per delivered frame. Repeated
+     * rgba() or gray() calls return the same Mat, including anything drawn into it.
+     * The cache is dropped by {@link #recycle()} once the frame has been delivered.
+     */
+    protected static abstract class CachedCameraFrame implements CvCameraViewFrame {
+        private static final LatencyHistogram sRgbaTiming = FrameTimings.get(FrameTimings.YUV_TO_RGBA);
+        private final Mat mRgba = new Mat();
+        private boolean mRgbaValid = false;
+        private Mat mGray;
+        private int mConversions = 0;
+
+        /** Converts the camera data of the current frame to RGBA. */
+        protected abstract void convertToRgba(Mat rgba);
+
+        /** Header over the luminance plane, no pixels are converted. */
+        protected abstract Mat createGray();
+
+        @Override
+        public final Mat rgba() {
+            if (!mRgbaValid) {
+                long start = System.nanoTime();
+                convertToRgba(mRgba);
+                sRgbaTiming.recordSince(start);
+                mRgbaValid = true;
+                mConversions++;
+            }
+            return mRgba;
+        }
+
+        @Override
+        public final Mat gray() {
+            if (mGray == null) {
+                mGray = createGray();
+                mConversions++;
+            }
+            return mGray;
+        }
+
+        /** Representations computed for the current frame so far. */
+        public int getConversionCount() {
+            return mConversions;
+        }
+
+        /**
+         * Drops the cached representations. The gray header is kept if the frame keeps
+         * reading from the same buffer.
+         * @return the conversions run for the recycled frame
+         */
+        protected int recycle(boolean keepGray) {
+            int conversions = mConversions;
+            mRgbaValid = false;
+            mConversions = 0;
+            if (!keepGray && mGray != null) {
+                mGray.release();
+                mGray = null;
+            }
+            return conversions;
+        }
+
+        public void release() {
+            recycle(false);
+            mRgba.release();
+        }
+    }
+
+    /**
+     * Conversions run for the last delivered frame: one for RGBA, one for the gray view.
+     * Zero means the listener only used the frame data it needed.
+     */
+    public int getLastFrameConversions() {
+        return mLastFrameConversions;
+    }
+
     public void surfaceChanged(SurfaceHolder arg0, int arg1, int arg2, int arg3) {
         Log.d(TAG, "call surfaceChanged event");
         synchronized(mSyncObject) {
@@ -255,6 +333,22 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
             mFpsMeter = null;
     }
 
+    /**
+     * Draws the per-stage latency percentiles of {@link FrameTimings} over the preview.
+     * The timings are collected whether the overlay is shown or not, and are reset when it is
+     * turned on so it shows the frames since rather than startup and warm-up.
+     */
+    public void enableTimingsOverlay() {
+        if (mTimingsMeter == null) {
+            FrameTimings.reset();
+            mTimingsMeter = new FrameTimingsMeter();
+        }
+    }
+
+    public void disableTimingsOverlay() {
+        mTimingsMeter = null;
+    }
+
     /**
      *
      * @param listener
@@ -393,11 +487,16 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
         } else {
             modified = frame.rgba();
         }
+        if (frame instanceof CachedCameraFrame) {
+            mLastFrameConversions = ((CachedCameraFrame) frame).getConversionCount();
+        }
 
         boolean bmpValid = true;
         if (modified != null) {
             try {
+                long start = System.nanoTime();
                 Utils.matToBitmap(modified, mCacheBitmap);
+                mBitmapTiming.recordSince(start);
             } catch(Exception e) {
                 Log.e(TAG, "Mat type: " + modified);
                 Log.e(TAG, "Bitmap type: " + mCacheBitmap.getWidth() + "*" + mCacheBitmap.getHeight());
@@ -407,6 +506,7 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
         }
 
         if (bmpValid && mCacheBitmap != null) {
+            long drawStart = System.nanoTime();
             Canvas canvas = getHolder().lockCanvas();
             if (canvas != null) {
                 canvas.drawColor(0, android.graphics.PorterDuff.Mode.CLEAR);
@@ -431,7 +531,13 @@ public abstract class CameraBridgeViewBase extends SurfaceView implements Surfac
                     mFpsMeter.measure();
                     mFpsMeter.draw(canvas, 20, 30);
                 }
+                FrameTimingsMeter timingsMeter = mTimingsMeter;
+                if (timingsMeter != null) {
+                    timingsMeter.measure();
+                    timingsMeter.draw(canvas, 20, 60);
+                }
                 getHolder().unlockCanvasAndPost(canvas);
+                mDrawTiming.recordSince(drawStart);
             }
         }
     }
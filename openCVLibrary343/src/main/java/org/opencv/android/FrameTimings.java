@@ -0,0 +1,65 @@
+package org.opencv.android;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import android.util.Log;
+
+/**
+ * Process-wide registry of per-stage frame latency histograms. The camera bridge records
+ * YUV to RGBA conversion, Mat to Bitmap copy and canvas drawing; listeners add their own
+ * stages by name. Look a histogram up once and keep it, recording is a synchronized increment.
+ * The histograms count until {@link #reset()}, which turning the overlay on and dumping call.
+ */
+public final class FrameTimings {
+    private static final String TAG = "FrameTimings";
+    public static final String YUV_TO_RGBA = "yuv2rgba";
+    public static final String MAT_TO_BITMAP = "matToBitmap";
+    public static final String CANVAS_DRAW = "canvasDraw";
+
+    private static final LinkedHashMap<String, LatencyHistogram> sHistograms = new LinkedHashMap<>();
+
+    private FrameTimings() {
+    }
+
+    /** The histogram of the given stage, created on first use. */
+    public static synchronized LatencyHistogram get(String stage) {
+        LatencyHistogram histogram = sHistograms.get(stage);
+        if (histogram == null) {
+            histogram = new LatencyHistogram(stage);
+            sHistograms.put(stage, histogram);
+        }
+        return histogram;
+    }
+
+    /** All stages in the order they were first used. */
+    public static synchronized List<LatencyHistogram> getAll() {
+        return new ArrayList<>(sHistograms.values());
+    }
+
+    public static String dump() {
+        StringBuilder dump = new StringBuilder();
+        for (LatencyHistogram histogram : getAll()) {
+            if (histogram.getCount() > 0) {
+                dump.append(histogram).append('\n');
+            }
+        }
+        return dump.toString();
+    }
+
+    /** Writes {@link #dump()} to the log, one line per stage. */
+    public static void log() {
+        for (String line : dump().split("\n")) {
+            if (!line.isEmpty()) {
+                Log.i(TAG, line);
+            }
+        }
+    }
+
+    public static void reset() {
+        for (LatencyHistogram histogram : getAll()) {
+            histogram.reset();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package org.opencv.android;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+
+/**
+ * Draws the {@link FrameTimings} percentiles over the preview. The text is rebuilt every
+ * {@link #STEP} frames only, drawing in between reuses it.
+ */
+public class FrameTimingsMeter {
+    private static final int    STEP              = 20;
+    private static final int    LINE_HEIGHT       = 22;
+
+    private final List<String>  mLines = new ArrayList<>();
+    private int                 mFramesCounter;
+    private final Paint         mPaint;
+
+    public FrameTimingsMeter() {
+        mPaint = new Paint();
+        mPaint.setColor(Color.YELLOW);
+        mPaint.setTextSize(18);
+    }
+
+    public void measure() {
+        if (mFramesCounter++ % STEP != 0) {
+            return;
+        }
+        mLines.clear();
+        for (LatencyHistogram histogram : FrameTimings.getAll()) {
+            if (histogram.getCount() > 0) {
+                mLines.add(histogram.toString());
+            }
+        }
+    }
+
+    public void draw(Canvas canvas, float offsetx, float offsety) {
+        for (int i = 0; i < mLines.size(); i++) {
+            canvas.drawText(mLines.get(i), offsetx, offsety + i * LINE_HEIGHT, mPaint);
+        }
+    }
+}
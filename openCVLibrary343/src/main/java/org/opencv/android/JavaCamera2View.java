@@ -322,25 +322,23 @@ public class JavaCamera2View extends CameraBridgeViewBase {
         return true;
     }
 
-    private class JavaCamera2Frame implements CvCameraViewFrame {
+    private class JavaCamera2Frame extends CachedCameraFrame {
         @Override
-        public Mat gray() {
+        protected Mat createGray() {
             return mYuvFrameData.submat(0, mHeight, 0, mWidth);
         }
 
         @Override
-        public Mat rgba() {
+        protected void convertToRgba(Mat rgba) {
             if (mPreviewFormat == ImageFormat.NV21)
-                Imgproc.cvtColor(mYuvFrameData, mRgba, Imgproc.COLOR_YUV2RGBA_NV21, 4);
+                Imgproc.cvtColor(mYuvFrameData, rgba, Imgproc.COLOR_YUV2RGBA_NV21, 4);
             else if (mPreviewFormat == ImageFormat.YV12)
-                Imgproc.cvtColor(mYuvFrameData, mRgba, Imgproc.COLOR_YUV2RGB_I420, 4); // COLOR_YUV2RGBA_YV12 produces inverted colors
+                Imgproc.cvtColor(mYuvFrameData, rgba, Imgproc.COLOR_YUV2RGB_I420, 4); // COLOR_YUV2RGBA_YV12 produces inverted colors
             else if (mPreviewFormat == ImageFormat.YUV_420_888) {
                 assert (mUVFrameData != null);
-                Imgproc.cvtColorTwoPlane(mYuvFrameData, mUVFrameData, mRgba, Imgproc.COLOR_YUV2RGBA_NV21);
+                Imgproc.cvtColorTwoPlane(mYuvFrameData, mUVFrameData, rgba, Imgproc.COLOR_YUV2RGBA_NV21);
             } else
                 throw new IllegalArgumentException("Preview Format can be NV21 or YV12");
-
-            return mRgba;
         }
 
         public JavaCamera2Frame(Mat Yuv420sp, int width, int height) {
@@ -349,7 +347,6 @@ public class JavaCamera2View extends CameraBridgeViewBase {
             mHeight = height;
             mYuvFrameData = Yuv420sp;
             mUVFrameData = null;
-            mRgba = new Mat();
         }
 
         public JavaCamera2Frame(Mat Y, Mat UV, int width, int height) {
@@ -358,16 +355,10 @@ public class JavaCamera2View extends CameraBridgeViewBase {
             mHeight = height;
             mYuvFrameData = Y;
             mUVFrameData = UV;
-            mRgba = new Mat();
-        }
-
-        public void release() {
-            mRgba.release();
         }
 
         private Mat mYuvFrameData;
         private Mat mUVFrameData;
-        private Mat mRgba;
         private int mWidth;
         private int mHeight;
     };
@@ -310,22 +310,20 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
             mCamera.addCallbackBuffer(mBuffer);
     }
 
-    private class JavaCameraFrame implements CvCameraViewFrame {
+    private class JavaCameraFrame extends CachedCameraFrame {
         @Override
-        public Mat gray() {
+        protected Mat createGray() {
             return mYuvFrameData.submat(0, mHeight, 0, mWidth);
         }
 
         @Override
-        public Mat rgba() {
+        protected void convertToRgba(Mat rgba) {
             if (mPreviewFormat == ImageFormat.NV21)
-                Imgproc.cvtColor(mYuvFrameData, mRgba, Imgproc.COLOR_YUV2RGBA_NV21, 4);
+                Imgproc.cvtColor(mYuvFrameData, rgba, Imgproc.COLOR_YUV2RGBA_NV21, 4);
             else if (mPreviewFormat == ImageFormat.YV12)
-                Imgproc.cvtColor(mYuvFrameData, mRgba, Imgproc.COLOR_YUV2RGB_I420, 4);  // COLOR_YUV2RGBA_YV12 produces inverted colors
+                Imgproc.cvtColor(mYuvFrameData, rgba, Imgproc.COLOR_YUV2RGB_I420, 4);  // COLOR_YUV2RGBA_YV12 produces inverted colors
             else
                 throw new IllegalArgumentException("Preview Format can be NV21 or YV12");
-
-            return mRgba;
         }
 
         public JavaCameraFrame(Mat Yuv420sp, int width, int height) {
@@ -333,15 +331,14 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
             mWidth = width;
             mHeight = height;
             mYuvFrameData = Yuv420sp;
-            mRgba = new Mat();
         }
 
-        public void release() {
-            mRgba.release();
+        /** The frame chain buffers are reused, so the gray header stays valid. */
+        public void recycle() {
+            recycle(true);
         }
 
         private Mat mYuvFrameData;
-        private Mat mRgba;
         private int mWidth;
         private int mHeight;
     };
@@ -369,8 +366,10 @@ public class JavaCameraView extends CameraBridgeViewBase implements PreviewCallb
                 }
 
                 if (!mStopThread && hasFrame) {
-                    if (!mFrameChain[1 - mChainIdx].empty())
+                    if (!mFrameChain[1 - mChainIdx].empty()) {
                         deliverAndDrawFrame(mCameraFrame[1 - mChainIdx]);
+                        mCameraFrame[1 - mChainIdx].recycle();
+                    }
                 }
             } while (!mStopThread);
             Log.d(TAG, "Finish processing thread");